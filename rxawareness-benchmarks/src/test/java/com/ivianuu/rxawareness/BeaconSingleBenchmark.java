@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import com.google.android.gms.awareness.snapshot.BeaconStateResult;
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.ivianuu.rxawarenessbenchmarks.Stubs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Single;
+
+/**
+ * Benchmarks of the {@link BeaconSingle} result handling with a stubbed {@link BeaconState}.
+ * <p>
+ * Lives in the package of the library to reach the package private request classes. The client
+ * pool connects right away and answers every request synchronously, so the request benchmark
+ * measures the whole path of {@link BaseAwarenessSingle} from subscribing to the emitted value.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeaconSingleBenchmark {
+
+    @Param({"1000"})
+    public int beaconCount;
+
+    private StubBeaconStateResult result;
+    private BeaconSingle beaconSingle;
+
+    @Setup
+    public void setup() {
+        List<BeaconState.BeaconInfo> beacons = new ArrayList<>(beaconCount);
+        for (int i = 0; i < beaconCount; i++) {
+            beacons.add(new Stubs.StubBeacon("namespace", "type" + (i % 8), ("content" + i).getBytes()));
+        }
+
+        result = new StubBeaconStateResult(beacons);
+        beaconSingle = new StubBeaconSingle(new StubClientPool(result),
+                Collections.singletonList(BeaconState.TypeFilter.with("namespace", "type")));
+    }
+
+    @Benchmark
+    public List<BeaconState.BeaconInfo> unwrap() {
+        return beaconSingle.unwrap(result);
+    }
+
+    @Benchmark
+    public List<BeaconState.BeaconInfo> request() {
+        return Single.create(beaconSingle).blockingGet();
+    }
+
+    private static final class StubBeaconSingle extends BeaconSingle {
+
+        StubBeaconSingle(AwarenessClientPool clientPool, Collection<BeaconState.TypeFilter> typeFilters) {
+            super(clientPool, typeFilters);
+        }
+
+        @Override
+        protected PendingResult<BeaconStateResult> createRequest(GoogleApiClient googleApiClient) {
+            return null;
+        }
+    }
+
+    private static final class StubBeaconStateResult implements BeaconStateResult {
+
+        private final Status status = new Status(CommonStatusCodes.SUCCESS);
+        private final BeaconState beaconState;
+
+        StubBeaconStateResult(final List<BeaconState.BeaconInfo> beacons) {
+            this.beaconState = () -> beacons;
+        }
+
+        @Override
+        public BeaconState getBeaconState() {
+            return beaconState;
+        }
+
+        @Override
+        public Status getStatus() {
+            return status;
+        }
+    }
+}
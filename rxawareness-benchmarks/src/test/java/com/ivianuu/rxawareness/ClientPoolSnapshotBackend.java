@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.location.Location;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.snapshot.BeaconStateResult;
+import com.google.android.gms.awareness.snapshot.DetectedActivityResult;
+import com.google.android.gms.awareness.snapshot.HeadphoneStateResult;
+import com.google.android.gms.awareness.snapshot.LocationResult;
+import com.google.android.gms.awareness.snapshot.PlacesResult;
+import com.google.android.gms.awareness.snapshot.WeatherResult;
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.awareness.state.HeadphoneState;
+import com.google.android.gms.awareness.state.Weather;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.places.PlaceLikelihood;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Single;
+
+/**
+ * {@link SnapshotBackend} which, like the default backend, runs every request through
+ * {@link BaseAwarenessSingle} on the lease of an {@link AwarenessClientPool}. Only the Snapshot
+ * API call itself is stubbed: the pool is always connected and answers synchronously with the
+ * prepared values.
+ * <p>
+ * Combined snapshots use the default implementation of {@link SnapshotBackend#getSnapshot}
+ * instead of {@link ContextSnapshotSingle}, which issues its requests on the client directly.
+ */
+public final class ClientPoolSnapshotBackend extends SnapshotBackend {
+
+    private final AwarenessClientPool clientPool;
+
+    public ClientPoolSnapshotBackend(Weather weather, Location location, ActivityRecognitionResult activity,
+                                     List<BeaconState.BeaconInfo> beacons) {
+        clientPool = new StubClientPool(new StubSnapshotResult(weather, location, activity, beacons));
+    }
+
+    @NonNull
+    @Override
+    public Single<Weather> getWeather() {
+        return Single.create(new WeatherSingle(clientPool) {
+            @Override
+            protected PendingResult<WeatherResult> createRequest(GoogleApiClient googleApiClient) {
+                return null;
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Single<Location> getLocation() {
+        return Single.create(new LocationSingle(clientPool) {
+            @Override
+            protected PendingResult<LocationResult> createRequest(GoogleApiClient googleApiClient) {
+                return null;
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Single<ActivityRecognitionResult> getActivity() {
+        return Single.create(new ActivitySingle(clientPool) {
+            @Override
+            protected PendingResult<DetectedActivityResult> createRequest(GoogleApiClient googleApiClient) {
+                return null;
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Single<Boolean> headphonesPluggedIn() {
+        return Single.create(new HeadphoneSingle(clientPool) {
+            @Override
+            protected PendingResult<HeadphoneStateResult> createRequest(GoogleApiClient googleApiClient) {
+                return null;
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Single<List<PlaceLikelihood>> getNearbyPlaces() {
+        return Single.create(new NearbySingle(clientPool) {
+            @Override
+            protected PendingResult<PlacesResult> createRequest(GoogleApiClient googleApiClient) {
+                return null;
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Single<List<BeaconState.BeaconInfo>> getBeacons(@NonNull Collection<BeaconState.TypeFilter> typeFilters) {
+        return Single.create(new BeaconSingle(clientPool, typeFilters) {
+            @Override
+            protected PendingResult<BeaconStateResult> createRequest(GoogleApiClient googleApiClient) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Result of every Snapshot API request, each Single unwraps its own part.
+     */
+    private static final class StubSnapshotResult implements WeatherResult, LocationResult, DetectedActivityResult,
+            HeadphoneStateResult, PlacesResult, BeaconStateResult {
+
+        private final Status status = new Status(CommonStatusCodes.SUCCESS);
+        private final HeadphoneState headphoneState = () -> HeadphoneState.UNPLUGGED;
+        private final Weather weather;
+        private final Location location;
+        private final ActivityRecognitionResult activity;
+        private final BeaconState beaconState;
+
+        StubSnapshotResult(Weather weather, Location location, ActivityRecognitionResult activity,
+                           final List<BeaconState.BeaconInfo> beacons) {
+            this.weather = weather;
+            this.location = location;
+            this.activity = activity;
+            this.beaconState = () -> beacons;
+        }
+
+        @Override
+        public Status getStatus() {
+            return status;
+        }
+
+        @Override
+        public Weather getWeather() {
+            return weather;
+        }
+
+        @Override
+        public Location getLocation() {
+            return location;
+        }
+
+        @Override
+        public ActivityRecognitionResult getActivityRecognitionResult() {
+            return activity;
+        }
+
+        @Override
+        public HeadphoneState getHeadphoneState() {
+            return headphoneState;
+        }
+
+        @Override
+        public List<PlaceLikelihood> getPlaceLikelihoods() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public BeaconState getBeaconState() {
+            return beaconState;
+        }
+    }
+}
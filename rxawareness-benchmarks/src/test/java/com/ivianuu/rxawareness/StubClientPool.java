@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.ResultCallback;
+import com.ivianuu.rxawarenessbenchmarks.Stubs;
+
+/**
+ * Pool whose client is always connected and which answers every request with the same result.
+ */
+final class StubClientPool extends AwarenessClientPool {
+
+    private final Result result;
+
+    StubClientPool(Result result) {
+        super(new Stubs.StubContext(), 0, AwarenessMetrics.NONE, null, null);
+        this.result = result;
+    }
+
+    @NonNull
+    @Override
+    Lease acquire(@NonNull ClientCallback callback) {
+        Lease lease = new Lease(callback);
+        // the stubbed request never touches the client
+        //noinspection ConstantConditions
+        callback.onClientConnected(null);
+        return lease;
+    }
+
+    @Override
+    <R extends Result> void setResultCallback(@NonNull PendingResult<R> pendingResult,
+                                              @NonNull ResultCallback<? super R> callback) {
+        //noinspection unchecked
+        callback.onResult((R) result);
+    }
+}
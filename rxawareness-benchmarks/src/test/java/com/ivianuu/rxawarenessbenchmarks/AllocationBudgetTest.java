@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessbenchmarks;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.FenceState;
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.awareness.state.Weather;
+import com.ivianuu.rxawareness.RxSnapshot;
+import com.ivianuu.rxawareness.SnapshotType;
+import com.ivianuu.rxawarenessfence.BackgroundFence;
+import com.ivianuu.rxawarenessfence.FenceReceiver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.ivianuu.rxawarenessbenchmarks.AllocationBudgets.consume;
+
+/**
+ * Checks the bytes allocated per call of every public {@link RxSnapshot} getter and of the
+ * {@link FenceReceiver} dispatch, end to end from subscribing to the emitted value.
+ * <p>
+ * The getters run through the request Singles and the client lease of the default backend with a
+ * pool that is always connected and answers synchronously. Not covered are the Snapshot API calls
+ * themselves, the connection of the client and the combined request of the default backend, which
+ * {@link RxSnapshot#getAll()} and {@link RxSnapshot#getSnapshot(EnumSet)} use.
+ */
+@RunWith(Parameterized.class)
+public class AllocationBudgetTest {
+
+    private static final int BEACON_COUNT = 16;
+
+    private final String name;
+    private final Runnable call;
+
+    public AllocationBudgetTest(String name, Runnable call) {
+        this.name = name;
+        this.call = call;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> calls() {
+        final RxSnapshot snapshot = new RxSnapshot.Builder(new Stubs.StubContext())
+                .backend(Stubs.clientPoolSnapshotBackend(BEACON_COUNT))
+                .build();
+        final BeaconState.TypeFilter typeFilter = BeaconState.TypeFilter.with("namespace", "type");
+        final List<BeaconState.TypeFilter> typeFilters = Collections.singletonList(typeFilter);
+        final EnumSet<SnapshotType> types = EnumSet.of(SnapshotType.WEATHER, SnapshotType.LOCATION);
+
+        List<Object[]> calls = new ArrayList<>();
+        add(calls, "RxSnapshot.getWeather", () -> consume(snapshot.getWeather()));
+        add(calls, "RxSnapshot.getTemperature", () -> consume(snapshot.getTemperature(Weather.CELSIUS)));
+        add(calls, "RxSnapshot.getFeelsLikeTemperature", () -> consume(snapshot.getFeelsLikeTemperature(Weather.CELSIUS)));
+        add(calls, "RxSnapshot.getDewPoint", () -> consume(snapshot.getDewPoint(Weather.CELSIUS)));
+        add(calls, "RxSnapshot.getHumidity", () -> consume(snapshot.getHumidity()));
+        add(calls, "RxSnapshot.getWeatherConditions", () -> consume(snapshot.getWeatherConditions()));
+        add(calls, "RxSnapshot.getWeatherConditionSet", () -> consume(snapshot.getWeatherConditionSet()));
+        add(calls, "RxSnapshot.getLocation", () -> consume(snapshot.getLocation()));
+        add(calls, "RxSnapshot.getLatLng", () -> consume(snapshot.getLatLng()));
+        add(calls, "RxSnapshot.getSpeed", () -> consume(snapshot.getSpeed()));
+        add(calls, "RxSnapshot.getActivity", () -> consume(snapshot.getActivity()));
+        add(calls, "RxSnapshot.getMostProbableActivity", () -> consume(snapshot.getMostProbableActivity()));
+        add(calls, "RxSnapshot.getMostProbableActivity(min)", () -> consume(snapshot.getMostProbableActivity(50)));
+        add(calls, "RxSnapshot.getProbableActivities", () -> consume(snapshot.getProbableActivities()));
+        add(calls, "RxSnapshot.getProbableActivities(min)", () -> consume(snapshot.getProbableActivities(20)));
+        add(calls, "RxSnapshot.getActivityVector", () -> consume(snapshot.getActivityVector()));
+        add(calls, "RxSnapshot.headphonesPluggedIn", () -> consume(snapshot.headphonesPluggedIn()));
+        add(calls, "RxSnapshot.getNearbyPlaces", () -> consume(snapshot.getNearbyPlaces()));
+        add(calls, "RxSnapshot.getBeacons(filters...)", () -> consume(snapshot.getBeacons(typeFilter)));
+        add(calls, "RxSnapshot.getBeacons(filters)", () -> consume(snapshot.getBeacons(typeFilters)));
+        add(calls, "RxSnapshot.getAll", () -> consume(snapshot.getAll()));
+        add(calls, "RxSnapshot.getSnapshot", () -> consume(snapshot.getSnapshot(types)));
+
+        final Context context = new Stubs.StubContext();
+        final Intent intent = new Intent();
+        final FenceReceiver receiver = new NoOpReceiver();
+        add(calls, "FenceReceiver.onReceive", () -> receiver.onReceive(context, intent));
+
+        return calls;
+    }
+
+    @Before
+    public void setUp() {
+        BackgroundFence.setBackend(new Stubs.StubFenceBackend(new Stubs.StubFenceState("fence", FenceState.TRUE)));
+    }
+
+    @After
+    public void tearDown() {
+        BackgroundFence.setBackend(null);
+    }
+
+    @Test
+    public void allocatesWithinBudget() throws Exception {
+        AllocationBudgets.assertWithinBudget(name, call);
+    }
+
+    private static void add(List<Object[]> calls, String name, Runnable call) {
+        calls.add(new Object[]{name, call});
+    }
+
+    private static final class NoOpReceiver extends FenceReceiver {
+        @Override
+        protected void onUpdate(@NonNull Context context, @NonNull String key, boolean state, @Nullable Bundle bundle) {
+        }
+    }
+}
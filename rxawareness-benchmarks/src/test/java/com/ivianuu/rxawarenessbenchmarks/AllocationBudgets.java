@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessbenchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposable;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the bytes allocated per call against the budgets of {@code allocation-budgets.properties}.
+ * <p>
+ * Each call is measured with the allocation counter of the current thread after a warm up, which
+ * lets the JIT eliminate what escape analysis can. Checks are skipped on JVMs without the
+ * counter.
+ */
+public final class AllocationBudgets {
+
+    private static final String BUDGETS_FILE = "/allocation-budgets.properties";
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 10_000;
+
+    private static Properties budgets;
+
+    private AllocationBudgets() {
+        // no instances
+    }
+
+    /**
+     * Fails if the given call allocates more than its budget or has none.
+     *
+     * @param name name of the call in the budgets file
+     * @param call the call to measure
+     */
+    public static void assertWithinBudget(String name, Runnable call) throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        String budget = budgets().getProperty(name);
+        assertNotNull(name + " has no allocation budget", budget);
+
+        long bytes = bytesPerCall(threadBean, call);
+        assertTrue(name + " allocates " + bytes + " bytes per call, budget is " + budget.trim(),
+                bytes <= Long.parseLong(budget.trim()));
+    }
+
+    /**
+     * Subscribes to a Single which has to emit synchronously, without allocating an observer.
+     *
+     * @param single Single to consume
+     */
+    public static <T> void consume(Single<T> single) {
+        single.subscribe(Sink.INSTANCE);
+        Sink.INSTANCE.check();
+    }
+
+    private static long bytesPerCall(com.sun.management.ThreadMXBean threadBean, Runnable call) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            call.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            call.run();
+        }
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+
+        return (after - before) / MEASURED_ITERATIONS;
+    }
+
+    private static synchronized Properties budgets() throws IOException {
+        if (budgets == null) {
+            Properties properties = new Properties();
+            InputStream in = AllocationBudgets.class.getResourceAsStream(BUDGETS_FILE);
+            if (in == null) {
+                throw new IOException("Missing " + BUDGETS_FILE);
+            }
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            budgets = properties;
+        }
+        return budgets;
+    }
+
+    /**
+     * Observer reused for all calls, so the measurement only contains the allocations of the
+     * library.
+     */
+    private static final class Sink implements SingleObserver<Object> {
+
+        static final Sink INSTANCE = new Sink();
+
+        private Object value;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            value = null;
+            error = null;
+        }
+
+        @Override
+        public void onSuccess(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            this.error = e;
+        }
+
+        void check() {
+            if (error != null) {
+                throw new IllegalStateException("call failed", error);
+            }
+            if (value == null) {
+                throw new IllegalStateException("call did not emit synchronously");
+            }
+        }
+    }
+}
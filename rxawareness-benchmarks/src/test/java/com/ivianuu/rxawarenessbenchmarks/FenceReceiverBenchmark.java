@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessbenchmarks;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.FenceState;
+import com.ivianuu.rxawarenessfence.BackgroundFence;
+import com.ivianuu.rxawarenessfence.FenceReceiver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the synchronous dispatch of {@link FenceReceiver#onReceive(Context, Intent)},
+ * including the update of the fence state cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FenceReceiverBenchmark {
+
+    private Context context;
+    private Intent intent;
+    private CountingReceiver receiver;
+
+    @Setup
+    public void setup() {
+        context = new Stubs.StubContext();
+        intent = new Intent();
+        receiver = new CountingReceiver();
+        BackgroundFence.setBackend(new Stubs.StubFenceBackend(new Stubs.StubFenceState("fence", FenceState.TRUE)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BackgroundFence.setBackend(null);
+    }
+
+    @Benchmark
+    public int onReceive() {
+        receiver.onReceive(context, intent);
+        return receiver.updates;
+    }
+
+    static final class CountingReceiver extends FenceReceiver {
+
+        int updates;
+
+        @Override
+        protected void onUpdate(@NonNull Context context, @NonNull String key, boolean state, @Nullable Bundle bundle) {
+            updates++;
+        }
+    }
+}
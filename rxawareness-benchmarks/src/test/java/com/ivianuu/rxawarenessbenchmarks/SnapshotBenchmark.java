@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessbenchmarks;
+
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.location.DetectedActivity;
+import com.google.android.gms.maps.model.LatLng;
+import com.ivianuu.rxawareness.BeaconDelta;
+import com.ivianuu.rxawareness.RxSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the derived {@link RxSnapshot} operators and the beacon handling, end to end from
+ * subscribing to the emitted value.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({"1000"})
+    public int beaconCount;
+
+    private RxSnapshot snapshot;
+    private List<BeaconState.TypeFilter> typeFilters;
+
+    @Setup
+    public void setup() {
+        snapshot = new RxSnapshot.Builder(new Stubs.StubContext())
+                .backend(new Stubs.StubSnapshotBackend(beaconCount))
+                .build();
+        typeFilters = Collections.singletonList(BeaconState.TypeFilter.with("namespace", "type"));
+    }
+
+    @Benchmark
+    public List<Integer> getWeatherConditions() {
+        return snapshot.getWeatherConditions().blockingGet();
+    }
+
+    @Benchmark
+    public List<DetectedActivity> getProbableActivities() {
+        return snapshot.getProbableActivities(20).blockingGet();
+    }
+
+    @Benchmark
+    public LatLng getLatLng() {
+        return snapshot.getLatLng().blockingGet();
+    }
+
+    @Benchmark
+    public List<BeaconState.BeaconInfo> getBeacons() {
+        return snapshot.getBeacons(typeFilters).blockingGet();
+    }
+
+    /**
+     * Diffs the first poll of all beacons, every beacon is emitted as entered.
+     */
+    @Benchmark
+    public BeaconDelta observeBeaconsFirstPoll() {
+        return snapshot.observeBeacons(typeFilters, 1, TimeUnit.HOURS)
+                .take(beaconCount)
+                .blockingLast();
+    }
+}
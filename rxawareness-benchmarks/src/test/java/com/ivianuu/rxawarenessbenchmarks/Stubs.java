@@ -0,0 +1,283 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessbenchmarks;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.location.Location;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.FenceState;
+import com.google.android.gms.awareness.fence.FenceStateMap;
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.awareness.state.Weather;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.DetectedActivity;
+import com.google.android.gms.location.places.PlaceLikelihood;
+import com.ivianuu.rxawareness.ClientPoolSnapshotBackend;
+import com.ivianuu.rxawareness.SnapshotBackend;
+import com.ivianuu.rxawarenessfence.FenceBackend;
+import com.ivianuu.rxawarenessfence.FenceUpdate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Single;
+
+/**
+ * Backends answering synchronously with prepared values, so the benchmarks only measure the
+ * library itself.
+ */
+public final class Stubs {
+
+    private Stubs() {
+        // no instances
+    }
+
+    /**
+     * Context of the mockable android.jar, every other call returns a default value.
+     */
+    public static final class StubContext extends ContextWrapper {
+
+        @Nullable private BroadcastReceiver receiver;
+
+        public StubContext() {
+            super(null);
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter,
+                                       String broadcastPermission, Handler scheduler) {
+            this.receiver = receiver;
+            return null;
+        }
+
+        /**
+         * @return the receiver registered last
+         */
+        @Nullable
+        public BroadcastReceiver getReceiver() {
+            return receiver;
+        }
+    }
+
+    /**
+     * @param beaconCount number of beacons to report
+     * @return backend which runs every request through the request Singles and the client pool of
+     * the library and only stubs the Snapshot API call itself
+     */
+    static SnapshotBackend clientPoolSnapshotBackend(int beaconCount) {
+        return new ClientPoolSnapshotBackend(new StubWeather(), new Location("stub"), activity(), beacons(beaconCount));
+    }
+
+    private static ActivityRecognitionResult activity() {
+        return new ActivityRecognitionResult(Arrays.asList(
+                new DetectedActivity(DetectedActivity.STILL, 62),
+                new DetectedActivity(DetectedActivity.ON_FOOT, 21),
+                new DetectedActivity(DetectedActivity.WALKING, 21),
+                new DetectedActivity(DetectedActivity.IN_VEHICLE, 9),
+                new DetectedActivity(DetectedActivity.TILTING, 4),
+                new DetectedActivity(DetectedActivity.UNKNOWN, 4)), 0, 0);
+    }
+
+    private static List<BeaconState.BeaconInfo> beacons(int beaconCount) {
+        List<BeaconState.BeaconInfo> beacons = new ArrayList<>(beaconCount);
+        for (int i = 0; i < beaconCount; i++) {
+            beacons.add(new StubBeacon("namespace", "type" + (i % 8), ("content" + i).getBytes()));
+        }
+        return beacons;
+    }
+
+    static final class StubSnapshotBackend extends SnapshotBackend {
+
+        private final Single<Weather> weather = Single.just((Weather) new StubWeather());
+        private final Single<Location> location = Single.just(new Location("stub"));
+        private final Single<ActivityRecognitionResult> activity = Single.just(activity());
+        private final Single<List<BeaconState.BeaconInfo>> beacons;
+
+        StubSnapshotBackend(int beaconCount) {
+            beacons = Single.just(beacons(beaconCount));
+        }
+
+        @NonNull
+        @Override
+        public Single<Weather> getWeather() {
+            return weather;
+        }
+
+        @NonNull
+        @Override
+        public Single<Location> getLocation() {
+            return location;
+        }
+
+        @NonNull
+        @Override
+        public Single<ActivityRecognitionResult> getActivity() {
+            return activity;
+        }
+
+        @NonNull
+        @Override
+        public Single<Boolean> headphonesPluggedIn() {
+            return Single.just(Boolean.FALSE);
+        }
+
+        @NonNull
+        @Override
+        public Single<List<PlaceLikelihood>> getNearbyPlaces() {
+            return Single.just(Collections.<PlaceLikelihood>emptyList());
+        }
+
+        @NonNull
+        @Override
+        public Single<List<BeaconState.BeaconInfo>> getBeacons(@NonNull Collection<BeaconState.TypeFilter> typeFilters) {
+            return beacons;
+        }
+    }
+
+    static final class StubWeather implements Weather {
+
+        private static final int[] CONDITIONS = {Weather.CONDITION_CLOUDY, Weather.CONDITION_RAINY, Weather.CONDITION_WINDY};
+
+        @Override
+        public float getTemperature(int temperatureUnit) {
+            return 21.5f;
+        }
+
+        @Override
+        public float getFeelsLikeTemperature(int temperatureUnit) {
+            return 20f;
+        }
+
+        @Override
+        public float getDewPoint(int temperatureUnit) {
+            return 12f;
+        }
+
+        @Override
+        public int getHumidity() {
+            return 64;
+        }
+
+        @Override
+        public int[] getConditions() {
+            return CONDITIONS.clone();
+        }
+    }
+
+    public static final class StubBeacon implements BeaconState.BeaconInfo {
+
+        private final String namespace;
+        private final String type;
+        private final byte[] content;
+
+        public StubBeacon(String namespace, String type, byte[] content) {
+            this.namespace = namespace;
+            this.type = type;
+            this.content = content;
+        }
+
+        @Override
+        public String getNamespace() {
+            return namespace;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public byte[] getContent() {
+            return content;
+        }
+    }
+
+    static final class StubFenceBackend extends FenceBackend {
+
+        private final FenceState state;
+
+        StubFenceBackend(FenceState state) {
+            this.state = state;
+        }
+
+        @NonNull
+        @Override
+        public Single<Status> updateFences(@NonNull FenceUpdate update) {
+            return Single.just(new Status(CommonStatusCodes.SUCCESS));
+        }
+
+        @NonNull
+        @Override
+        public Single<FenceStateMap> queryFences(@Nullable Collection<String> keys) {
+            return Single.error(new UnsupportedOperationException());
+        }
+
+        @NonNull
+        @Override
+        public FenceState extractState(@NonNull Intent intent) {
+            return state;
+        }
+    }
+
+    public static final class StubFenceState extends FenceState {
+
+        private final String key;
+        private final int currentState;
+
+        public StubFenceState(String key, int currentState) {
+            this.key = key;
+            this.currentState = currentState;
+        }
+
+        @Override
+        public int getCurrentState() {
+            return currentState;
+        }
+
+        @Override
+        public int getPreviousState() {
+            return currentState == TRUE ? FALSE : TRUE;
+        }
+
+        @Override
+        public long getLastFenceUpdateTimeMillis() {
+            return 0;
+        }
+
+        @Override
+        public String getFenceKey() {
+            return key;
+        }
+    }
+}
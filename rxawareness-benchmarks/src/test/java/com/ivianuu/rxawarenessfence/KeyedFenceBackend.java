@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.FenceState;
+import com.google.android.gms.awareness.fence.FenceStateMap;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+import com.ivianuu.rxawarenessbenchmarks.Stubs;
+
+import java.util.Collection;
+
+import io.reactivex.Single;
+
+/**
+ * Backend which reports the state of the fence added last.
+ */
+final class KeyedFenceBackend extends FenceBackend {
+
+    private FenceState state;
+
+    @NonNull
+    @Override
+    public Single<Status> updateFences(@NonNull FenceUpdate update) {
+        for (String key : update.getAdditions().keySet()) {
+            state = new Stubs.StubFenceState(key, FenceState.TRUE);
+        }
+        return Single.just(new Status(CommonStatusCodes.SUCCESS));
+    }
+
+    @NonNull
+    @Override
+    public Single<FenceStateMap> queryFences(@Nullable Collection<String> keys) {
+        return Single.error(new UnsupportedOperationException());
+    }
+
+    @NonNull
+    @Override
+    public FenceState extractState(@NonNull Intent intent) {
+        return state;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.BroadcastReceiver;
+import android.content.Intent;
+
+import com.ivianuu.rxawarenessbenchmarks.AllocationBudgets;
+import com.ivianuu.rxawarenessbenchmarks.Stubs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reactivex.disposables.Disposable;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the bytes allocated per fence state delivered to an {@link ObservableFence} through the
+ * receiver of the {@link FenceMultiplexer}.
+ * <p>
+ * Lives in the package of the library to subscribe without the shared registry, whose fence
+ * identities need a real {@link android.os.Parcel}.
+ */
+public class ObservableFenceAllocationTest {
+
+    private Stubs.StubContext context;
+    private Disposable subscription;
+    private long states;
+
+    @Before
+    public void setUp() {
+        context = new Stubs.StubContext();
+        BackgroundFence.setBackend(new KeyedFenceBackend());
+
+        // the stub backend never looks at the fence
+        subscription = ObservableFence.createUnshared(context, null)
+                .subscribe(state -> states++);
+    }
+
+    @After
+    public void tearDown() {
+        subscription.dispose();
+        BackgroundFence.setBackend(null);
+    }
+
+    @Test
+    public void allocatesWithinBudget() throws Exception {
+        final BroadcastReceiver receiver = context.getReceiver();
+        assertNotNull(receiver);
+
+        final Intent intent = new Intent();
+        AllocationBudgets.assertWithinBudget("ObservableFence.onReceive",
+                () -> receiver.onReceive(context, intent));
+        assertTrue(states > 0);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import com.ivianuu.rxawarenessbenchmarks.Stubs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Benchmark of subscribing to and disposing an {@link ObservableFence}, which adds the emitter to
+ * the {@link FenceMultiplexer} and registers and unregisters the fence with the backend.
+ * <p>
+ * Lives in the package of the library to subscribe without the shared registry, whose fence
+ * identities need a real {@link android.os.Parcel}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObservableFenceBenchmark {
+
+    private Stubs.StubContext context;
+
+    @Setup
+    public void setup() {
+        context = new Stubs.StubContext();
+        BackgroundFence.setBackend(new KeyedFenceBackend());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BackgroundFence.setBackend(null);
+    }
+
+    @Benchmark
+    public boolean subscribeAndDispose() {
+        // the stub backend never looks at the fence
+        Disposable subscription = ObservableFence.createUnshared(context, null)
+                .subscribe(state -> { });
+        subscription.dispose();
+        return subscription.isDisposed();
+    }
+}
@@ -18,11 +18,20 @@ package com.ivianuu.rxawarenessfence;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.google.android.gms.awareness.fence.AwarenessFence;
 import com.google.android.gms.awareness.fence.FenceStateMap;
+import com.ivianuu.rxawareness.AwarenessMetrics;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
 import io.reactivex.Single;
 
 /**
@@ -84,6 +93,25 @@ public class BackgroundFence {
         RegisterBackgroundFenceAction.registerWithData(context, name, awarenessFence, data);
     }
 
+    /**
+     * Registers a background fence like {@link #registerWithData(Context, String, AwarenessFence, Bundle)},
+     * but keeps the data in a local store instead of attaching it to the PendingIntent.
+     * <p>
+     * Only the name of the fence travels with each callback, so large data does not need to be
+     * parceled on every delivery. The data is not passed to
+     * {@link FenceReceiver#onUpdate(Context, String, boolean, Bundle)}, receivers load it on demand
+     * with {@link FenceReceiver#getStoredData(Context, String)}. It is deleted once the fence is
+     * unregistered or registered again without stored data.
+     *
+     * @param context        Context to use for registering the fence
+     * @param name           name of the fence to register. Should be unique
+     * @param awarenessFence The fence description
+     * @param data           data to store for the fence
+     */
+    public static void registerWithStoredData(Context context, String name, AwarenessFence awarenessFence, @NonNull Bundle data) {
+        RegisterBackgroundFenceAction.registerWithStoredData(context, name, awarenessFence, data);
+    }
+
     /**
      * Unregisters the background fence with the given name. This fence will then not receive any
      * status updates anymore.
@@ -96,6 +124,53 @@ public class BackgroundFence {
         UnregisterBackgroundFenceAction.unregister(context, name);
     }
 
+    /**
+     * Registers several background fences at once. All fences are sent in a single request on a
+     * single connection, which is much cheaper than registering them one by one.
+     * <p>
+     * Fences are registered as with {@link #register(Context, String, AwarenessFence)}.
+     *
+     * @param context Context to use for registering the fences
+     * @param fences  fence descriptions keyed by their unique names
+     * @return Completable which completes once all fences are registered or fails with a
+     * {@link FenceUpdateException} listing the fences that could not be registered
+     */
+    public static Completable registerAll(Context context, Map<String, AwarenessFence> fences) {
+        return BatchFenceUpdateCompletable.update(context, fences, Collections.<String>emptyList());
+    }
+
+    /**
+     * Unregisters several background fences at once. All fences are sent in a single request on a
+     * single connection.
+     *
+     * @param context Context to use for unregistering the fences
+     * @param names   names of the fences to unregister
+     * @return Completable which completes once all fences are unregistered or fails with a
+     * {@link FenceUpdateException} listing the fences that could not be unregistered
+     */
+    public static Completable unregisterAll(Context context, Collection<String> names) {
+        return BatchFenceUpdateCompletable.update(context, Collections.<String, AwarenessFence>emptyMap(), names);
+    }
+
+    /**
+     * Makes the registered background fences match the given fence set.
+     * <p>
+     * The currently registered fences are queried and compared to fingerprints of the fences of
+     * the last reconciled fence set. Only fences that are missing or changed are registered, and
+     * only fences of an earlier fence set that are not part of this one are unregistered. All
+     * changes are sent in a single request. Fences registered by other means are not touched.
+     * <p>
+     * Calling this on every app start is cheap if nothing changed.
+     *
+     * @param context  Context to use
+     * @param fenceSet the fences that should be registered
+     * @return Completable which completes once the registered fences match the fence set or fails
+     * with a {@link FenceUpdateException} listing the fences that could not be updated
+     */
+    public static Completable reconcile(Context context, FenceSet fenceSet) {
+        return FenceReconciler.reconcile(context, fenceSet);
+    }
+
     /**
      * Queries the currently registered fences and delivers the result as a {@link Single}.
      * <p>
@@ -107,6 +182,65 @@ public class BackgroundFence {
      * @return Single {@link FenceStateMap} describing all the fences that are currently registered.
      */
     public static Single<FenceStateMap> query(Context context) {
-        return QueryBackgroundFenceSingle.query(context);
+        return FenceBackend.get(context).queryFences(null);
+    }
+
+    /**
+     * Sets the metrics that all fence operations, including the ones of {@link ObservableFence}s,
+     * report their timings to. Operations are reported as {@code "FENCE_REGISTER"},
+     * {@code "FENCE_UNREGISTER"}, {@code "FENCE_QUERY"}, {@code "FENCE_BATCH_UPDATE"},
+     * {@code "OBSERVABLE_FENCE_REGISTER"} and
+     * {@code "OBSERVABLE_FENCE_UNREGISTER"}.
+     *
+     * @param metrics metrics to report to, e.g. a {@link com.ivianuu.rxawareness.LatencyHistogramMetrics}
+     */
+    public static void setMetrics(@NonNull AwarenessMetrics metrics) {
+        FenceMetrics.set(metrics);
+    }
+
+    /**
+     * Sets the backend that all fences, including {@link ObservableFence}s, are registered with
+     * instead of the Fence API, e.g. a fake backend for load tests.
+     *
+     * @param backend backend to use or {@code null} to use the Fence API again
+     */
+    public static void setBackend(@Nullable FenceBackend backend) {
+        FenceBackend.set(backend);
+    }
+
+    /**
+     * Returns the states of the given fences.
+     * <p>
+     * States are served from a local cache which is updated by every {@link FenceReceiver}
+     * callback. Only fences whose state is unknown or older than the max age set through
+     * {@link #configureStateCache(Context, long, TimeUnit, boolean)} are queried from the Fence
+     * API, in a single request. Fences whose states are not delivered to a {@link FenceReceiver}
+     * are not cached and always queried.
+     *
+     * @param context Context to use for the query operation
+     * @param keys    names of the fences to query
+     * @return Single map of the fence states keyed by fence name. Fences which are not registered
+     * are missing from the map.
+     */
+    public static Single<Map<String, CachedFenceState>> query(Context context, String... keys) {
+        return FenceStateCache.get(context).query(Arrays.asList(keys));
+    }
+
+    /**
+     * Configures the local fence state cache used by {@link #query(Context, String...)}.
+     * <p>
+     * By default cached states never get stale, since only fences whose state changes are
+     * delivered to a {@link FenceReceiver} are cached, and the cache is kept in memory only.
+     *
+     * @param context    Context to use
+     * @param maxAge     max age of a cached state before it is queried again
+     * @param unit       unit of the max age
+     * @param persistent {@code true} to persist the cache, so it survives process restarts
+     */
+    public static void configureStateCache(Context context, long maxAge, TimeUnit unit, boolean persistent) {
+        if (maxAge < 0) {
+            throw new IllegalArgumentException("max age must not be negative");
+        }
+        FenceStateCache.get(context).configure(unit.toMillis(maxAge), persistent);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.fence.AwarenessFence;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.CompletableOnSubscribe;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Adds and removes several background fences in one {@link FenceUpdate} request to the
+ * {@link FenceBackend}.
+ * <p>
+ * The Fence API only reports one status for the whole request. Should it fail, every fence is
+ * updated on its own to find out which fences actually failed.
+ * <p>
+ * Fence ids are allocated and released on the io scheduler, since both rewrite the id index.
+ */
+class BatchFenceUpdateCompletable implements CompletableOnSubscribe {
+
+    private final Context context;
+    private final FenceBackend backend;
+    private final Map<String, AwarenessFence> additions;
+    private final Map<String, Bundle> data;
+    private final Collection<String> removals;
+
+    private BatchFenceUpdateCompletable(Context context,
+                                        FenceBackend backend,
+                                        Map<String, AwarenessFence> additions,
+                                        Map<String, Bundle> data,
+                                        Collection<String> removals) {
+        this.context = context;
+        this.backend = backend;
+        this.additions = additions;
+        this.data = data;
+        this.removals = removals;
+    }
+
+    /**
+     * Creates the batched update.
+     *
+     * @param context   context to use
+     * @param additions fences to register keyed by their name
+     * @param removals  names of the fences to unregister
+     * @return Completable which fails with a {@link FenceUpdateException} if any fence could not be
+     * updated
+     */
+    static Completable update(Context context,
+                              Map<String, AwarenessFence> additions,
+                              Collection<String> removals) {
+        return update(context, additions, Collections.<String, Bundle>emptyMap(), removals);
+    }
+
+    /**
+     * Creates the batched update.
+     *
+     * @param context   context to use
+     * @param additions fences to register keyed by their name
+     * @param data      data to attach to the added fences keyed by their name, fences without
+     *                  an entry are registered without data
+     * @param removals  names of the fences to unregister
+     * @return Completable which fails with a {@link FenceUpdateException} if any fence could not be
+     * updated
+     */
+    static Completable update(Context context,
+                              Map<String, AwarenessFence> additions,
+                              Map<String, Bundle> data,
+                              Collection<String> removals) {
+        final Context applicationContext = context.getApplicationContext();
+        final Map<String, AwarenessFence> additionsCopy = new LinkedHashMap<>(additions);
+        final Map<String, Bundle> dataCopy = new HashMap<>(data);
+        final List<String> removalsCopy = new ArrayList<>(removals);
+
+        if (additionsCopy.isEmpty() && removalsCopy.isEmpty()) {
+            return Completable.complete();
+        }
+
+        return Completable.create(new BatchFenceUpdateCompletable(applicationContext,
+                FenceBackend.get(applicationContext), additionsCopy, dataCopy, removalsCopy));
+    }
+
+    @Override
+    public void subscribe(final CompletableEmitter emitter) throws Exception {
+        emitter.setDisposable(Single.fromCallable(this::createUpdate)
+                .subscribeOn(Schedulers.io())
+                .flatMap(update -> {
+                    final long requestStartNanos = System.nanoTime();
+                    return backend.updateFences(update)
+                            .doOnSuccess(status -> FenceMetrics.get().onRequestFinished(FenceMetrics.OPERATION_BATCH_UPDATE,
+                                    status.getStatusCode(), System.nanoTime() - requestStartNanos, 0));
+                })
+                .observeOn(Schedulers.io())
+                .subscribe(status -> {
+                    invalidateCachedStates();
+
+                    if (status.isSuccess()) {
+                        releaseIds(removals);
+                        emitter.onComplete();
+                    } else {
+                        updateSeparately(emitter);
+                    }
+                }, emitter::onError));
+    }
+
+    private FenceUpdate createUpdate() {
+        FenceUpdate.Builder builder = new FenceUpdate.Builder();
+        for (String name : removals) {
+            builder.removeFence(name);
+        }
+        for (Map.Entry<String, AwarenessFence> entry : additions.entrySet()) {
+            builder.addFence(entry.getKey(), entry.getValue(), createPendingIntent(entry.getKey()), data.get(entry.getKey()));
+        }
+        return builder.build();
+    }
+
+    private void updateSeparately(final CompletableEmitter emitter) {
+        final Map<String, Status> failures = new HashMap<>();
+        final int[] remaining = {removals.size() + additions.size()};
+
+        for (String name : removals) {
+            updateSeparately(name, new FenceUpdate.Builder().removeFence(name).build(),
+                    emitter, failures, remaining);
+        }
+        for (Map.Entry<String, AwarenessFence> entry : additions.entrySet()) {
+            FenceUpdate update = new FenceUpdate.Builder()
+                    .addFence(entry.getKey(), entry.getValue(), createPendingIntent(entry.getKey()), data.get(entry.getKey()))
+                    .build();
+            updateSeparately(entry.getKey(), update, emitter, failures, remaining);
+        }
+    }
+
+    private void updateSeparately(final String name,
+                                  FenceUpdate update,
+                                  final CompletableEmitter emitter,
+                                  final Map<String, Status> failures,
+                                  final int[] remaining) {
+        //noinspection ResultOfMethodCallIgnored
+        backend.updateFences(update)
+                .onErrorReturn(throwable -> new Status(CommonStatusCodes.ERROR, throwable.getMessage()))
+                .observeOn(Schedulers.io())
+                .subscribe(status -> {
+                    synchronized (failures) {
+                        if (!status.isSuccess()) {
+                            failures.put(name, status);
+                        } else if (removals.contains(name)) {
+                            releaseIds(Collections.singleton(name));
+                        }
+
+                        if (--remaining[0] > 0) {
+                            return;
+                        }
+                    }
+
+                    if (failures.isEmpty()) {
+                        emitter.onComplete();
+                    } else {
+                        emitter.onError(new FenceUpdateException(failures));
+                    }
+                });
+    }
+
+    private void releaseIds(Collection<String> names) {
+        FencePayloadStore payloadStore = FencePayloadStore.get(context);
+        FenceIdAllocator allocator = FenceIdAllocator.get(context);
+        for (String name : names) {
+            // replaced fences keep their id
+            if (!additions.containsKey(name)) {
+                payloadStore.remove(name);
+                allocator.release(name);
+            }
+        }
+    }
+
+    private void invalidateCachedStates() {
+        FenceStateCache cache = FenceStateCache.get(context);
+        for (String name : removals) {
+            cache.invalidate(name);
+        }
+        for (String name : additions.keySet()) {
+            cache.invalidate(name);
+        }
+    }
+
+    @NonNull
+    private PendingIntent createPendingIntent(String name) {
+        return FenceReceiver.createPendingIntent(context, FenceIdAllocator.get(context).idOf(name), data.get(name));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.fence.FenceState;
+
+/**
+ * State of a background fence as known to the local fence state cache.
+ */
+public final class CachedFenceState {
+
+    private final String key;
+    private final int currentState;
+    private final int previousState;
+    private final long lastFenceUpdateTimeMillis;
+    private final long cachedAtMillis;
+
+    CachedFenceState(String key, int currentState, int previousState,
+                     long lastFenceUpdateTimeMillis, long cachedAtMillis) {
+        this.key = key;
+        this.currentState = currentState;
+        this.previousState = previousState;
+        this.lastFenceUpdateTimeMillis = lastFenceUpdateTimeMillis;
+        this.cachedAtMillis = cachedAtMillis;
+    }
+
+    static CachedFenceState from(@NonNull FenceState state) {
+        return new CachedFenceState(state.getFenceKey(), state.getCurrentState(), state.getPreviousState(),
+                state.getLastFenceUpdateTimeMillis(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return the key/name of the fence
+     */
+    @NonNull
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the current state, one of {@link FenceState#TRUE}, {@link FenceState#FALSE} or
+     * {@link FenceState#UNKNOWN}
+     */
+    public int getCurrentState() {
+        return currentState;
+    }
+
+    /**
+     * @return {@code true} if the fence condition is currently valid
+     */
+    public boolean isTrue() {
+        return currentState == FenceState.TRUE;
+    }
+
+    /**
+     * @return the state before the last update, one of {@link FenceState#TRUE},
+     * {@link FenceState#FALSE} or {@link FenceState#UNKNOWN}
+     */
+    public int getPreviousState() {
+        return previousState;
+    }
+
+    /**
+     * @return the time of the last state change of the fence in milliseconds since epoch
+     */
+    public long getLastFenceUpdateTimeMillis() {
+        return lastFenceUpdateTimeMillis;
+    }
+
+    /**
+     * @return the time this state was cached at in milliseconds since epoch
+     */
+    public long getCachedAtMillis() {
+        return cachedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedFenceState{key=" + key + ", currentState=" + currentState
+                + ", previousState=" + previousState + ", lastFenceUpdateTimeMillis="
+                + lastFenceUpdateTimeMillis + ", cachedAtMillis=" + cachedAtMillis + "}";
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.FenceState;
+import com.google.android.gms.awareness.fence.FenceStateMap;
+import com.google.android.gms.common.api.Status;
+
+import java.util.Collection;
+
+import io.reactivex.Single;
+
+/**
+ * Backend that background and observable fences are registered with.
+ * <p>
+ * By default the Fence API of the Awareness API is used. Other implementations, e.g. a fake
+ * backend, can be set through {@link BackgroundFence#setBackend(FenceBackend)}. A backend delivers
+ * fence states by sending the pending intents of the added fences, the states are read back from
+ * the intents through {@link #extractState(Intent)}. Backends without an Android runtime can
+ * deliver states in-process through {@link #dispatchState(Context, FenceState, Bundle, FenceReceiver)}
+ * instead.
+ */
+public abstract class FenceBackend {
+
+    @Nullable private static volatile FenceBackend backend;
+    @Nullable private static FenceBackend defaultBackend;
+
+    /**
+     * @param context context to use
+     * @return the backend set through {@link #set(FenceBackend)} or the Fence API
+     */
+    @NonNull
+    static FenceBackend get(@NonNull Context context) {
+        FenceBackend current = backend;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (FenceBackend.class) {
+            if (defaultBackend == null) {
+                defaultBackend = new PlayServicesFenceBackend(context.getApplicationContext());
+            }
+            return defaultBackend;
+        }
+    }
+
+    /**
+     * @param backend backend to use or {@code null} to use the Fence API
+     */
+    static void set(@Nullable FenceBackend backend) {
+        FenceBackend.backend = backend;
+    }
+
+    /**
+     * Adds and removes fences in one request.
+     *
+     * @param update fences to add and remove
+     * @return Single of the status of the request
+     */
+    @CheckResult @NonNull
+    public abstract Single<Status> updateFences(@NonNull FenceUpdate update);
+
+    /**
+     * Queries the states of registered fences.
+     *
+     * @param keys keys of the fences to query or {@code null} to query all fences
+     * @return Single map of the states of the registered fences
+     */
+    @CheckResult @NonNull
+    public abstract Single<FenceStateMap> queryFences(@Nullable Collection<String> keys);
+
+    /**
+     * Reads the fence state from an intent sent to the pending intent of a fence.
+     *
+     * @param intent the received intent
+     * @return the fence state
+     */
+    @NonNull
+    public FenceState extractState(@NonNull Intent intent) {
+        return FenceState.extract(intent);
+    }
+
+    /**
+     * Delivers a fence state in-process, like a broadcast to the pending intent of the fence
+     * would. States of observable fences are emitted to their subscribers, states of background
+     * fences are passed to the given receiver.
+     *
+     * @param context  context to use
+     * @param state    the fence state
+     * @param data     data the fence was added with, see {@link FenceUpdate#getData(String)}
+     * @param receiver receiver to deliver background fence states to
+     * @return whether the state was delivered, {@code false} for a background fence without a
+     * receiver
+     */
+    protected final boolean dispatchState(@NonNull Context context,
+                                          @NonNull FenceState state,
+                                          @Nullable Bundle data,
+                                          @Nullable FenceReceiver receiver) {
+        if (FenceMultiplexer.isObservableKey(state.getFenceKey())) {
+            FenceMultiplexer.get(context).dispatch(state);
+            return true;
+        }
+
+        if (receiver == null) {
+            return false;
+        }
+
+        receiver.dispatch(context, state, data);
+        return true;
+    }
+}
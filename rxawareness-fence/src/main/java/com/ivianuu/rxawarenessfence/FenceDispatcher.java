@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches the updates of asynchronous {@link FenceReceiver}s off the main thread.
+ * <p>
+ * Updates arriving within the batch window are collected and delivered in one
+ * {@link FenceReceiver#onBatchUpdate(Context, List)} call. All batches are delivered one after
+ * another on a single worker thread, so updates of a fence are always delivered in order. The
+ * broadcasts are kept alive through {@link BroadcastReceiver#goAsync()} until their batch was
+ * handled.
+ * <p>
+ * Exceptions thrown by the receiver are passed to the uncaught exception handler of the worker
+ * thread, so they crash the app like they do in a synchronous receiver.
+ */
+class FenceDispatcher {
+
+    static final int MAX_BATCH_SIZE = 32;
+
+    private static final ScheduledExecutorService EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "FenceDispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ConcurrentHashMap<Class<?>, FenceDispatcher> dispatchers = new ConcurrentHashMap<>();
+
+    private final List<FenceEvent> events = new ArrayList<>();
+    private final List<BroadcastReceiver.PendingResult> pendingResults = new ArrayList<>();
+
+    private FenceReceiver receiver;
+    private Context context;
+    private boolean flushScheduled;
+
+    private FenceDispatcher() {
+    }
+
+    /**
+     * @param receiverClass class of the receiver
+     * @return the dispatcher of the given receiver class
+     */
+    @NonNull
+    static FenceDispatcher get(@NonNull Class<? extends FenceReceiver> receiverClass) {
+        FenceDispatcher dispatcher = dispatchers.get(receiverClass);
+        if (dispatcher == null) {
+            FenceDispatcher newDispatcher = new FenceDispatcher();
+            dispatcher = dispatchers.putIfAbsent(receiverClass, newDispatcher);
+            if (dispatcher == null) {
+                dispatcher = newDispatcher;
+            }
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Runs the given task on the dispatcher thread after the given delay.
+     *
+     * @param task        task to run
+     * @param delayMillis delay in milliseconds
+     */
+    static void schedule(@NonNull Runnable task, long delayMillis) {
+        EXECUTOR.schedule(() -> runOrCrash(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an update for delivery.
+     *
+     * @param receiver      receiver to deliver the batch to
+     * @param context       context to deliver with
+     * @param event         the update
+     * @param pendingResult result of {@link BroadcastReceiver#goAsync()} of the broadcast or
+     *                      {@code null} if the update was not delivered by a broadcast
+     * @param windowMillis  time to wait for further updates before delivering
+     */
+    synchronized void enqueue(@NonNull FenceReceiver receiver,
+                              @NonNull Context context,
+                              @NonNull FenceEvent event,
+                              @Nullable BroadcastReceiver.PendingResult pendingResult,
+                              long windowMillis) {
+        events.add(event);
+        if (pendingResult != null) {
+            pendingResults.add(pendingResult);
+        }
+        this.receiver = receiver;
+        this.context = context;
+
+        if (events.size() >= MAX_BATCH_SIZE) {
+            EXECUTOR.execute(() -> runOrCrash(this::flush));
+            flushScheduled = true;
+        } else if (!flushScheduled) {
+            schedule(this::flush, windowMillis);
+            flushScheduled = true;
+        }
+    }
+
+    private void flush() {
+        List<FenceEvent> batch;
+        List<BroadcastReceiver.PendingResult> results;
+        FenceReceiver receiver;
+        Context context;
+
+        synchronized (this) {
+            flushScheduled = false;
+            if (events.isEmpty()) {
+                return;
+            }
+
+            batch = new ArrayList<>(events);
+            results = new ArrayList<>(pendingResults);
+            events.clear();
+            pendingResults.clear();
+            receiver = this.receiver;
+            context = this.context;
+        }
+
+        try {
+            receiver.onBatchUpdate(context, batch);
+        } finally {
+            for (BroadcastReceiver.PendingResult result : results) {
+                result.finish();
+            }
+        }
+    }
+
+    private static void runOrCrash(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException | Error e) {
+            // the executor would keep the exception in its future where nobody sees it
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * A single fence state update delivered to {@link FenceReceiver#onBatchUpdate(android.content.Context, java.util.List)}
+ * and {@link FenceReceiver#onUpdate(android.content.Context, FenceEvent)}.
+ */
+public final class FenceEvent {
+
+    private final String key;
+    private final boolean state;
+    @Nullable private final Bundle bundle;
+    private final long timestampMillis;
+    private final long sequence;
+
+    FenceEvent(@NonNull String key, boolean state, @Nullable Bundle bundle, long timestampMillis, long sequence) {
+        this.key = key;
+        this.state = state;
+        this.bundle = bundle;
+        this.timestampMillis = timestampMillis;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the key/name of the fence that received an update
+     */
+    @NonNull
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the state of the fence, {@code true} if the fence condition is valid
+     */
+    public boolean getState() {
+        return state;
+    }
+
+    /**
+     * @return bundle with additional data that was attached to this fence
+     */
+    @Nullable
+    public Bundle getBundle() {
+        return bundle;
+    }
+
+    /**
+     * @return the time the fence changed its state at in milliseconds since epoch
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Returns the sequence of this update in the {@link FenceJournal}. Consumers store the
+     * sequence of the last update they handled and {@link FenceJournal#replay(long) replay} the
+     * journal from the next one after a restart.
+     *
+     * @return the journal sequence or {@code -1} if the update was not journaled
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "FenceEvent{key=" + key + ", state=" + state + ", timestampMillis=" + timestampMillis
+                + ", sequence=" + sequence + "}";
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persists the fingerprints of the fences registered through a {@link FenceSet}.
+ */
+class FenceFingerprintStore {
+
+    private static final String PREFERENCES_NAME = "com.ivianuu.rxawarenessfence.FenceSet";
+
+    private final SharedPreferences preferences;
+
+    FenceFingerprintStore(@NonNull Context context) {
+        this.preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the stored fingerprints keyed by fence name
+     */
+    @NonNull
+    Map<String, Long> load() {
+        Map<String, Long> fingerprints = new HashMap<>();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getValue() instanceof Long) {
+                fingerprints.put(entry.getKey(), (Long) entry.getValue());
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Replaces all stored fingerprints.
+     *
+     * @param fingerprints fingerprints keyed by fence name
+     */
+    void save(@NonNull Map<String, Long> fingerprints) {
+        SharedPreferences.Editor editor = preferences.edit().clear();
+        for (Map.Entry<String, Long> entry : fingerprints.entrySet()) {
+            editor.putLong(entry.getKey(), entry.getValue());
+        }
+        editor.apply();
+    }
+}
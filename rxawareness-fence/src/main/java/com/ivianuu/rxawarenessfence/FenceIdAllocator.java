@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Allocates the PendingIntent request codes of background fences.
+ * <p>
+ * Every fence name gets the lowest free id which stays the same until the fence is unregistered,
+ * so two registered fences never share a request code and thereby a PendingIntent. Id {@code 0}
+ * is never handed out.
+ * <p>
+ * The ids are persisted as a compact index of name and id pairs, which is rewritten to a
+ * temporary file and atomically renamed on every change.
+ */
+class FenceIdAllocator {
+
+    private static final String FILE_NAME = "rxawareness_fence_ids";
+    private static final int VERSION = 1;
+
+    private static FenceIdAllocator instance;
+
+    private final File file;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final BitSet usedIds = new BitSet();
+
+    private boolean loaded;
+
+    FenceIdAllocator(File file) {
+        this.file = file;
+        usedIds.set(0);
+    }
+
+    @NonNull
+    static synchronized FenceIdAllocator get(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FenceIdAllocator(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the id of the given fence, allocating a new one if the fence has none.
+     *
+     * @param name name of the fence
+     * @return the request code of the fence
+     */
+    synchronized int idOf(@NonNull String name) {
+        load();
+
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        int newId = usedIds.nextClearBit(1);
+        ids.put(name, newId);
+        usedIds.set(newId);
+        save();
+        return newId;
+    }
+
+    /**
+     * @param name name of the fence
+     * @return the id of the given fence or {@code -1} if it has none
+     */
+    synchronized int peekId(@NonNull String name) {
+        load();
+
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Releases the id of the given fence. Must only be called once the fence was unregistered.
+     *
+     * @param name name of the fence
+     */
+    synchronized void release(@NonNull String name) {
+        load();
+
+        Integer id = ids.remove(name);
+        if (id != null) {
+            usedIds.clear(id);
+            save();
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION) {
+                return;
+            }
+
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String name = in.readUTF();
+                int id = in.readInt();
+                ids.put(name, id);
+                usedIds.set(id);
+            }
+        } catch (FileNotFoundException e) {
+            // nothing allocated yet
+        } catch (IOException e) {
+            Log.e("ReactiveAwareness", "Error while loading fence ids", e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void save() {
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            FileOutputStream fileOut = new FileOutputStream(tempFile);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(VERSION);
+            out.writeInt(ids.size());
+            for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            out = null;
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        } catch (IOException e) {
+            Log.e("ReactiveAwareness", "Error while saving fence ids", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
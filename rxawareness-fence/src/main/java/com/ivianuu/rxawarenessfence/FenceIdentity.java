@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.fence.AwarenessFence;
+
+import java.util.Arrays;
+
+/**
+ * Canonical identity of an {@link AwarenessFence}.
+ * <p>
+ * Fences don't implement equals, so two fences are considered equal if their parceled forms are
+ * byte-wise equal. Structurally equal fences built independently have equal identities.
+ */
+final class FenceIdentity {
+
+    private final byte[] bytes;
+    private final int hashCode;
+
+    private FenceIdentity(byte[] bytes) {
+        this.bytes = bytes;
+        this.hashCode = Arrays.hashCode(bytes);
+    }
+
+    /**
+     * @param fence fence to identify
+     * @return identity of the given fence
+     */
+    @NonNull
+    static FenceIdentity of(@NonNull AwarenessFence fence) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            fence.writeToParcel(parcel, 0);
+            return new FenceIdentity(parcel.marshall());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * @return stable 64 bit hash of the parceled fence
+     */
+    long fingerprint() {
+        return hash64(bytes);
+    }
+
+    /**
+     * Computes the 64 bit FNV-1a hash of the given bytes.
+     *
+     * @param bytes bytes to hash
+     * @return hash of the bytes
+     */
+    static long hash64(@NonNull byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FenceIdentity)) return false;
+        FenceIdentity that = (FenceIdentity) o;
+        return hashCode == that.hashCode && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of the updates received by {@link FenceReceiver}s.
+ * <p>
+ * Every update is stored as a fixed-size record in a memory-mapped file before it is dispatched,
+ * so updates are not lost if the process dies while handling them. Each record holds the hash
+ * of the fence key, the state, the time of the update and the offset of the key in a separate
+ * payload file. Records are numbered by an increasing sequence which stays stable across
+ * {@link #compact(long) compactions}, consumers store the sequence they handled last and
+ * {@link #replay(long) replay} the journal from there after a restart.
+ * <p>
+ * Records are only committed once fully written, a record interrupted by a crash is ignored.
+ * Writes survive the death of the process but are not forced to the disk, so they may be lost if
+ * the device loses power.
+ * <p>
+ * The journal keeps about {@link #MAX_RECORDS} records, once it is full the older half is
+ * compacted away on a worker thread. Appending never waits for the files to be rewritten, records
+ * appended during a compaction are kept. A journal with a corrupt header is discarded and started over with sequence
+ * {@code 0}, consumers whose stored sequence is past {@link #getEndSequence()} replay it from the
+ * start.
+ * <p>
+ * Receivers opt in through {@link FenceReceiver#isJournaled()}.
+ */
+public final class FenceJournal {
+
+    /**
+     * Max number of records kept in the journal
+     */
+    public static final int MAX_RECORDS = 4096;
+
+    private static final String FILE_NAME = "rxawareness_fence_journal";
+    private static final String PAYLOAD_FILE_PREFIX = FILE_NAME + ".payload.";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x464A524E;
+    private static final int VERSION = 1;
+
+    // magic, version, base sequence, payload generation, padding
+    private static final int HEADER_SIZE = 24;
+    // key hash, timestamp, payload offset, payload length, state, committed, padding
+    private static final int RECORD_SIZE = 32;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final byte COMMITTED = 1;
+
+    private static FenceJournal instance;
+
+    private final File directory;
+    private final Object compactionLock = new Object();
+
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private RandomAccessFile payloads;
+
+    private long baseSequence;
+    private int payloadGeneration;
+    private int capacity;
+    private int count;
+    private boolean compactionScheduled;
+
+    FenceJournal(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param context context to use
+     * @return the journal of this application
+     */
+    @NonNull
+    public static synchronized FenceJournal get(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FenceJournal(context.getApplicationContext().getFilesDir());
+        }
+        return instance;
+    }
+
+    /**
+     * Appends an update to the journal.
+     *
+     * @param key             key of the fence
+     * @param state           state of the fence
+     * @param timestampMillis time of the update
+     * @return the sequence of the new record
+     */
+    synchronized long append(@NonNull String key, boolean state, long timestampMillis) throws IOException {
+        open();
+
+        if (count == capacity) {
+            map(capacity * 2);
+        }
+
+        byte[] keyBytes = key.getBytes(UTF_8);
+        long payloadOffset = payloads.length();
+        payloads.seek(payloadOffset);
+        payloads.write(keyBytes);
+
+        int position = HEADER_SIZE + count * RECORD_SIZE;
+        buffer.putLong(position, FenceIdentity.hash64(keyBytes));
+        buffer.putLong(position + 8, timestampMillis);
+        buffer.putLong(position + 16, payloadOffset);
+        buffer.putInt(position + 24, keyBytes.length);
+        buffer.put(position + 28, (byte) (state ? 1 : 0));
+        // committing last, a record interrupted before this point is ignored on open
+        buffer.put(position + 29, COMMITTED);
+        count++;
+
+        if (count >= MAX_RECORDS && !compactionScheduled) {
+            compactionScheduled = true;
+            FenceDispatcher.schedule(this::compactOldRecords, 0);
+        }
+
+        return baseSequence + count - 1;
+    }
+
+    /**
+     * @return the sequence of the oldest record in the journal
+     */
+    public synchronized long getStartSequence() throws IOException {
+        open();
+        return baseSequence;
+    }
+
+    /**
+     * @return the sequence the next appended record will get
+     */
+    public synchronized long getEndSequence() throws IOException {
+        open();
+        return baseSequence + count;
+    }
+
+    /**
+     * Reads all records starting at the given sequence. Records older than the start sequence
+     * were compacted and are skipped.
+     *
+     * @param fromSequence sequence of the first record to read
+     * @return the records in the order they were appended
+     */
+    @NonNull
+    public synchronized List<Entry> replay(long fromSequence) throws IOException {
+        open();
+
+        int from = (int) Math.max(0, Math.min(count, fromSequence - baseSequence));
+        List<Entry> entries = new ArrayList<>(count - from);
+        long payloadLength = payloads.length();
+
+        for (int i = from; i < count; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            long offset = buffer.getLong(position + 16);
+            int length = buffer.getInt(position + 24);
+
+            String key = null;
+            if (offset >= 0 && offset + length <= payloadLength) {
+                byte[] keyBytes = new byte[length];
+                payloads.seek(offset);
+                payloads.readFully(keyBytes);
+                key = new String(keyBytes, UTF_8);
+            }
+
+            entries.add(new Entry(baseSequence + i, buffer.getLong(position), key,
+                    buffer.get(position + 28) == 1, buffer.getLong(position + 8)));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Drops all records older than the given sequence. The journal is rewritten into new files
+     * which atomically replace the old ones, a crash during compaction keeps the old journal.
+     * Appends are only blocked while the records are copied in memory and while the records
+     * appended during the rewrite are carried over.
+     *
+     * @param beforeSequence sequence of the oldest record to keep
+     */
+    public void compact(long beforeSequence) throws IOException {
+        synchronized (compactionLock) {
+            int from;
+            int snapshotCount;
+            long newBaseSequence;
+            int oldGeneration;
+            long payloadLength;
+            ByteBuffer snapshot;
+
+            synchronized (this) {
+                open();
+
+                from = (int) Math.max(0, Math.min(count, beforeSequence - baseSequence));
+                if (from == 0) {
+                    return;
+                }
+
+                snapshotCount = count;
+                newBaseSequence = baseSequence + from;
+                oldGeneration = payloadGeneration;
+                payloadLength = payloads.length();
+
+                ByteBuffer source = buffer.duplicate();
+                source.position(HEADER_SIZE + from * RECORD_SIZE);
+                source.limit(HEADER_SIZE + snapshotCount * RECORD_SIZE);
+                snapshot = ByteBuffer.allocate(source.remaining());
+                snapshot.put(source);
+            }
+
+            int remaining = snapshotCount - from;
+            int newCapacity = capacityFor(remaining);
+            int newGeneration = oldGeneration + 1;
+            File newFile = new File(directory, FILE_NAME + ".tmp");
+
+            ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + newCapacity * RECORD_SIZE);
+            writeHeader(records, newBaseSequence, newGeneration);
+
+            RandomAccessFile oldPayloads = new RandomAccessFile(payloadFile(oldGeneration), "r");
+            RandomAccessFile newPayloads = new RandomAccessFile(payloadFile(newGeneration), "rw");
+            RandomAccessFile out = new RandomAccessFile(newFile, "rw");
+            try {
+                // payloads are only appended, so the part the snapshot refers to doesn't change
+                newPayloads.setLength(0);
+                for (int i = 0; i < remaining; i++) {
+                    copyRecord(snapshot, i * RECORD_SIZE, oldPayloads, payloadLength,
+                            records, HEADER_SIZE + i * RECORD_SIZE, newPayloads);
+                }
+                newPayloads.getFD().sync();
+
+                out.setLength(0);
+                out.getChannel().write(records, 0);
+                out.getFD().sync();
+
+                synchronized (this) {
+                    int appended = count - snapshotCount;
+                    if (appended > 0) {
+                        ByteBuffer delta = ByteBuffer.allocate(appended * RECORD_SIZE);
+                        long currentPayloadLength = payloads.length();
+                        for (int i = 0; i < appended; i++) {
+                            copyRecord(buffer, HEADER_SIZE + (snapshotCount + i) * RECORD_SIZE, payloads,
+                                    currentPayloadLength, delta, i * RECORD_SIZE, newPayloads);
+                        }
+
+                        if (remaining + appended > newCapacity) {
+                            out.setLength(HEADER_SIZE + (long) capacityFor(remaining + appended) * RECORD_SIZE);
+                        }
+                        delta.rewind();
+                        out.getChannel().write(delta, HEADER_SIZE + (long) remaining * RECORD_SIZE);
+                    }
+
+                    out.close();
+                    newPayloads.close();
+                    close();
+                    if (!newFile.renameTo(new File(directory, FILE_NAME))) {
+                        throw new IOException("Could not replace fence journal");
+                    }
+                    open();
+                }
+            } finally {
+                oldPayloads.close();
+                newPayloads.close();
+                out.close();
+            }
+        }
+    }
+
+    private void compactOldRecords() {
+        try {
+            compact(getEndSequence() - MAX_RECORDS / 2);
+        } catch (IOException e) {
+            Log.e("ReactiveAwareness", "Error while compacting fence journal", e);
+        } finally {
+            synchronized (this) {
+                compactionScheduled = false;
+            }
+        }
+    }
+
+    private static void copyRecord(ByteBuffer source, int sourcePosition, RandomAccessFile sourcePayloads,
+                                   long sourcePayloadLength, ByteBuffer target, int targetPosition,
+                                   RandomAccessFile targetPayloads) throws IOException {
+        long offset = source.getLong(sourcePosition + 16);
+        int length = source.getInt(sourcePosition + 24);
+        long newOffset = -1;
+        if (offset >= 0 && offset + length <= sourcePayloadLength) {
+            byte[] keyBytes = new byte[length];
+            sourcePayloads.seek(offset);
+            sourcePayloads.readFully(keyBytes);
+
+            newOffset = targetPayloads.length();
+            targetPayloads.seek(newOffset);
+            targetPayloads.write(keyBytes);
+        }
+
+        for (int b = 0; b < RECORD_SIZE; b++) {
+            target.put(targetPosition + b, source.get(sourcePosition + b));
+        }
+        target.putLong(targetPosition + 16, newOffset);
+    }
+
+    private static int capacityFor(int records) {
+        return Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, records)) * 2);
+    }
+
+    private void open() throws IOException {
+        if (file != null) {
+            return;
+        }
+
+        File journalFile = new File(directory, FILE_NAME);
+        file = new RandomAccessFile(journalFile, "rw");
+
+        if (file.length() < HEADER_SIZE + RECORD_SIZE) {
+            map(INITIAL_CAPACITY);
+            writeHeader(buffer, 0, 0);
+            baseSequence = 0;
+            payloadGeneration = 0;
+        } else {
+            map((int) ((file.length() - HEADER_SIZE) / RECORD_SIZE));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                // the records can't be trusted without their header, start over
+                Log.e("ReactiveAwareness", "Corrupt fence journal, starting a new one");
+                close();
+                if (!journalFile.delete()) {
+                    throw new IOException("Could not delete corrupt fence journal");
+                }
+                open();
+                return;
+            }
+            baseSequence = buffer.getLong(8);
+            payloadGeneration = buffer.getInt(16);
+        }
+
+        count = 0;
+        while (count < capacity && buffer.get(HEADER_SIZE + count * RECORD_SIZE + 29) == COMMITTED) {
+            count++;
+        }
+
+        payloads = new RandomAccessFile(payloadFile(payloadGeneration), "rw");
+        deleteStalePayloadFiles();
+    }
+
+    private void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+        if (payloads != null) {
+            payloads.close();
+            payloads = null;
+        }
+        buffer = null;
+    }
+
+    private void map(int capacity) throws IOException {
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        if (file.length() < size) {
+            file.setLength(size);
+        }
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.capacity = capacity;
+    }
+
+    private File payloadFile(int generation) {
+        return new File(directory, PAYLOAD_FILE_PREFIX + generation);
+    }
+
+    private void deleteStalePayloadFiles() {
+        String current = PAYLOAD_FILE_PREFIX + payloadGeneration;
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (name.startsWith(PAYLOAD_FILE_PREFIX) && !name.equals(current)) {
+                //noinspection ResultOfMethodCallIgnored
+                new File(directory, name).delete();
+            }
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, long baseSequence, int payloadGeneration) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, baseSequence);
+        buffer.putInt(16, payloadGeneration);
+    }
+
+    /**
+     * A record of the journal
+     */
+    public static final class Entry {
+
+        private final long sequence;
+        private final long keyHash;
+        @Nullable private final String key;
+        private final boolean state;
+        private final long timestampMillis;
+
+        Entry(long sequence, long keyHash, @Nullable String key, boolean state, long timestampMillis) {
+            this.sequence = sequence;
+            this.keyHash = keyHash;
+            this.key = key;
+            this.state = state;
+            this.timestampMillis = timestampMillis;
+        }
+
+        /**
+         * @return the sequence of this record
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the 64 bit hash of the fence key
+         */
+        public long getKeyHash() {
+            return keyHash;
+        }
+
+        /**
+         * @return the key of the fence or {@code null} if its payload was lost
+         */
+        @Nullable
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the state of the fence
+         */
+        public boolean getState() {
+            return state;
+        }
+
+        /**
+         * @return the time of the update
+         */
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+    }
+}
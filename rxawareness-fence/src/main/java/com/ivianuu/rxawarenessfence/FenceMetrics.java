@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.support.annotation.NonNull;
+
+import com.ivianuu.rxawareness.AwarenessMetrics;
+
+/**
+ * Holds the {@link AwarenessMetrics} all fence operations report to.
+ */
+class FenceMetrics {
+
+    static final String OPERATION_REGISTER = "FENCE_REGISTER";
+    static final String OPERATION_UNREGISTER = "FENCE_UNREGISTER";
+    static final String OPERATION_QUERY = "FENCE_QUERY";
+    static final String OPERATION_BATCH_UPDATE = "FENCE_BATCH_UPDATE";
+    static final String OPERATION_OBSERVABLE_REGISTER = "OBSERVABLE_FENCE_REGISTER";
+    static final String OPERATION_OBSERVABLE_UNREGISTER = "OBSERVABLE_FENCE_UNREGISTER";
+
+    private static volatile AwarenessMetrics metrics = AwarenessMetrics.NONE;
+
+    private FenceMetrics() {
+        // no instances
+    }
+
+    static void set(@NonNull AwarenessMetrics metrics) {
+        FenceMetrics.metrics = metrics;
+    }
+
+    @NonNull
+    static AwarenessMetrics get() {
+        return metrics;
+    }
+}
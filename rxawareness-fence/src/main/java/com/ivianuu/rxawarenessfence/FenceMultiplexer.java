@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.awareness.fence.FenceState;
+import com.google.android.gms.common.api.Status;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Maybe;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+
+/**
+ * Routes the updates of all {@link ObservableFence}s through a single receiver and a single
+ * {@link PendingIntent}.
+ * <p>
+ * Every subscription gets a unique fence key, incoming {@link FenceState}s are dispatched to the
+ * emitter registered for their key. The receiver is registered while at least one subscription
+ * exists.
+ * <p>
+ * Keys contain a random prefix per process. Fences left behind by a process which died before
+ * disposing them are removed on the first subscription of the next process. This assumes that
+ * only one process of the app observes fences at a time.
+ * <p>
+ * The receiver runs on the callback looper and emits on a worker of the callback scheduler if
+ * they are set, both are picked up once the receiver gets registered.
+ */
+class FenceMultiplexer {
+
+    private static final String RECEIVER_ACTION = "ACTION_REACTIVE_AWARENESS";
+    private static final String KEY_PREFIX = "ObservableFence:";
+
+    private static FenceMultiplexer instance;
+    @Nullable private static volatile Looper callbackLooper;
+    @Nullable private static volatile Scheduler callbackScheduler;
+
+    private final Context context;
+    private final PendingIntent pendingIntent;
+    private final String keyPrefix = KEY_PREFIX + UUID.randomUUID() + ":";
+    private final AtomicLong nextKey = new AtomicLong();
+    private final ConcurrentHashMap<String, ObservableEmitter<Boolean>> emitters = new ConcurrentHashMap<>();
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            dispatch(FenceBackend.get(context).extractState(intent));
+        }
+    };
+
+    private boolean receiverRegistered;
+    private boolean staleFencesRemoved;
+    @Nullable private volatile Scheduler.Worker worker;
+
+    private FenceMultiplexer(Context context) {
+        this.context = context;
+        Intent intent = new Intent(RECEIVER_ACTION).setPackage(context.getPackageName());
+        this.pendingIntent = PendingIntent.getBroadcast(context, 0, intent, 0);
+    }
+
+    /**
+     * @param context context to use
+     * @return the multiplexer of this process
+     */
+    @NonNull
+    static synchronized FenceMultiplexer get(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FenceMultiplexer(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the looper and scheduler used once the receiver gets registered the next time.
+     *
+     * @param looper    looper to receive the fence states on, {@code null} for the main looper
+     * @param scheduler scheduler to emit the fence states on, {@code null} to emit on the looper
+     */
+    static void setCallbacks(@Nullable Looper looper, @Nullable Scheduler scheduler) {
+        callbackLooper = looper;
+        callbackScheduler = scheduler;
+    }
+
+    /**
+     * @return the pending intent all observable fences have to be registered with
+     */
+    @NonNull
+    PendingIntent pendingIntent() {
+        return pendingIntent;
+    }
+
+    /**
+     * @param key fence key
+     * @return whether the key belongs to an observable fence
+     */
+    static boolean isObservableKey(@NonNull String key) {
+        return key.startsWith(KEY_PREFIX);
+    }
+
+    /**
+     * Emits a fence state to the subscriber of its key. Called by the receiver and by backends
+     * that deliver states in-process.
+     *
+     * @param state the fence state
+     */
+    void dispatch(@NonNull FenceState state) {
+        final ObservableEmitter<Boolean> emitter = emitters.get(state.getFenceKey());
+        if (emitter == null) {
+            return;
+        }
+
+        final boolean value = state.getCurrentState() == FenceState.TRUE;
+        Scheduler.Worker currentWorker = worker;
+        if (currentWorker != null) {
+            // one worker keeps the states in order
+            currentWorker.schedule(() -> emitter.onNext(value));
+        } else {
+            emitter.onNext(value);
+        }
+    }
+
+    /**
+     * Adds a subscriber and makes sure the receiver is registered.
+     *
+     * @param emitter emitter to dispatch the fence states to
+     * @return the unique fence key to register the fence with
+     */
+    @NonNull
+    synchronized String add(@NonNull ObservableEmitter<Boolean> emitter) {
+        String key = keyPrefix + nextKey.getAndIncrement();
+        emitters.put(key, emitter);
+
+        if (!staleFencesRemoved) {
+            staleFencesRemoved = true;
+            removeStaleFences();
+        }
+
+        if (!receiverRegistered) {
+            Looper looper = callbackLooper;
+            Scheduler scheduler = callbackScheduler;
+            worker = scheduler != null ? scheduler.createWorker() : null;
+            context.registerReceiver(receiver, new IntentFilter(RECEIVER_ACTION), null,
+                    looper != null ? new Handler(looper) : null);
+            receiverRegistered = true;
+        }
+
+        return key;
+    }
+
+    /**
+     * Removes all observable fences which were registered by an earlier process and can't be
+     * disposed anymore, as their keys are lost.
+     */
+    private void removeStaleFences() {
+        final FenceBackend backend = FenceBackend.get(context);
+
+        //noinspection ResultOfMethodCallIgnored
+        backend.queryFences(null)
+                .flatMapMaybe(fenceStateMap -> {
+                    FenceUpdate.Builder builder = new FenceUpdate.Builder();
+                    boolean stale = false;
+                    for (String key : fenceStateMap.getFenceKeys()) {
+                        if (isObservableKey(key) && !key.startsWith(keyPrefix)) {
+                            builder.removeFence(key);
+                            stale = true;
+                        }
+                    }
+
+                    return stale ? backend.updateFences(builder.build()).toMaybe() : Maybe.<Status>empty();
+                })
+                .subscribe(status -> {
+                    if (!status.isSuccess()) {
+                        Log.e("ReactiveAwareness", "Error removing stale observable fences. " + status.getStatusMessage());
+                    }
+                }, throwable -> Log.e("ReactiveAwareness", "Error removing stale observable fences", throwable));
+    }
+
+    /**
+     * Removes the subscriber of the given key and unregisters the receiver once no subscriber is
+     * left.
+     *
+     * @param key fence key of the subscriber
+     */
+    synchronized void remove(@NonNull String key) {
+        emitters.remove(key);
+
+        if (emitters.isEmpty() && receiverRegistered) {
+            context.unregisterReceiver(receiver);
+            receiverRegistered = false;
+
+            Scheduler.Worker currentWorker = worker;
+            if (currentWorker != null) {
+                currentWorker.dispose();
+                worker = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Local store of the data attached to background fences.
+ * <p>
+ * Fences registered with stored data only carry their key in the PendingIntent, the data is
+ * kept here in one file per fence which is named after the fence id of the
+ * {@link FenceIdAllocator}. The data is only read once a receiver asks for it. Parcels are not
+ * stable across platform versions, so data written by another platform version is dropped.
+ */
+class FencePayloadStore {
+
+    private static final String DIRECTORY_NAME = "rxawareness_fence_payloads";
+
+    private static FencePayloadStore instance;
+
+    private final Context context;
+    private final File directory;
+
+    private FencePayloadStore(Context context) {
+        this.context = context;
+        this.directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+    }
+
+    @NonNull
+    static synchronized FencePayloadStore get(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FencePayloadStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Stores the data of the given fence, replacing its previous data.
+     *
+     * @param name name of the fence
+     * @param data data of the fence or {@code null} to remove it
+     */
+    synchronized void put(@NonNull String name, @Nullable Bundle data) {
+        if (data == null) {
+            remove(name);
+            return;
+        }
+
+        byte[] bytes;
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeInt(Build.VERSION.SDK_INT);
+            parcel.writeString(name);
+            parcel.writeBundle(data);
+            bytes = parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+
+        File file = file(FenceIdAllocator.get(context).idOf(name));
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+
+            FileOutputStream out = new FileOutputStream(tempFile);
+            try {
+                out.write(bytes);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        } catch (IOException e) {
+            Log.e("ReactiveAwareness", "Error while storing fence data", e);
+        }
+    }
+
+    /**
+     * @param name name of the fence
+     * @return the stored data of the fence or {@code null} if it has none
+     */
+    @Nullable
+    synchronized Bundle get(@NonNull String name) {
+        int id = FenceIdAllocator.get(context).peekId(name);
+        if (id < 0) {
+            return null;
+        }
+
+        File file = file(id);
+        byte[] bytes;
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                bytes = new byte[(int) file.length()];
+                int read = 0;
+                while (read < bytes.length) {
+                    int count = in.read(bytes, read, bytes.length - read);
+                    if (count < 0) {
+                        throw new IOException("Unexpected end of " + file);
+                    }
+                    read += count;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e("ReactiveAwareness", "Error while reading fence data", e);
+            return null;
+        }
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            if (parcel.readInt() != Build.VERSION.SDK_INT || !name.equals(parcel.readString())) {
+                return null;
+            }
+            return parcel.readBundle(context.getClassLoader());
+        } catch (RuntimeException e) {
+            Log.e("ReactiveAwareness", "Error while reading fence data", e);
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Removes the stored data of the given fence. Must be called before its id is released.
+     *
+     * @param name name of the fence
+     */
+    synchronized void remove(@NonNull String name) {
+        int id = FenceIdAllocator.get(context).peekId(name);
+        if (id >= 0) {
+            //noinspection ResultOfMethodCallIgnored
+            file(id).delete();
+        }
+    }
+
+    private File file(int id) {
+        return new File(directory, String.valueOf(id));
+    }
+}
@@ -23,9 +23,14 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
+import com.google.android.gms.awareness.fence.AwarenessFence;
 import com.google.android.gms.awareness.fence.FenceState;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * BackgroundReceiver that receives fence state updates to BackgroundFences.
  * <p>
@@ -44,11 +49,27 @@ import com.google.android.gms.awareness.fence.FenceState;
  * {@link #onUpdate(Context, String, boolean, Bundle)} with the name of the fence and it's state.
  * <p>
  * The state will be {@code true} if the fence condition is valid.
+ * <p>
+ * By default updates are delivered synchronously on the main thread. Override
+ * {@link #isAsync()} to deliver them on a worker thread instead. Updates arriving within
+ * {@link #getBatchWindowMillis()} are then delivered together to
+ * {@link #onBatchUpdate(Context, List)}, which calls
+ * {@link #onUpdate(Context, String, boolean, Bundle)} for each of them unless overridden.
+ * <p>
+ * Override {@link #isJournaled()} to record updates in the {@link FenceJournal} and
+ * {@link #getFlapPolicy(String)} to suppress updates of fences that flip back and forth. The
+ * journal sequence of an update is available through {@link FenceEvent#getSequence()} in
+ * {@link #onUpdate(Context, FenceEvent)} and {@link #onBatchUpdate(Context, List)}.
  */
 public abstract class FenceReceiver extends BroadcastReceiver {
     private static final String EXTRA_BUNDLE = "EXTRA_BUNDLE";
     private static final String ACTION_BACKGROUND_FENCE = "ReactiveAwarenessFence";
 
+    /**
+     * Max dwell time of a {@link FlapPolicy} applied to background fences
+     */
+    public static final long MAX_DWELL_MILLIS = 8000;
+
     /**
      * Creates a pending intent that will call this receiver
      *
@@ -79,14 +100,180 @@ public abstract class FenceReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        FenceState state = FenceState.extract(intent);
+        dispatch(context, FenceBackend.get(context).extractState(intent), intent.getBundleExtra(EXTRA_BUNDLE));
+    }
 
-        Bundle bundle = intent.getBundleExtra(EXTRA_BUNDLE);
+    /**
+     * Handles a fence state like a received broadcast. Backends that deliver states in-process
+     * call this directly, there is no broadcast to keep alive then.
+     *
+     * @param context context to use
+     * @param state   the fence state
+     * @param bundle  data attached to the fence
+     */
+    void dispatch(Context context, FenceState state, @Nullable Bundle bundle) {
+        FenceStateCache.get(context).put(state);
 
         boolean result = state.getCurrentState() == FenceState.TRUE;
         String key = state.getFenceKey();
+        long timestampMillis = state.getLastFenceUpdateTimeMillis();
+
+        long sequence = -1;
+        if (isJournaled()) {
+            try {
+                sequence = FenceJournal.get(context).append(key, result, timestampMillis);
+            } catch (IOException e) {
+                Log.e("ReactiveAwareness", "Error while journaling fence update", e);
+            }
+        }
+
+        FenceEvent event = new FenceEvent(key, result, bundle, timestampMillis, sequence);
+
+        FlapPolicy policy = getFlapPolicy(key);
+        if (policy == null) {
+            deliver(context, event, null);
+            return;
+        }
+
+        FlapFilter filter = FlapFilter.get(context, getClass());
+        long generation = filter.offer(key, result, policy);
+        if (generation < 0) {
+            return;
+        }
 
-        onUpdate(context, key, result, bundle);
+        long dwellMillis = Math.min(policy.getMinDwellMillis(), MAX_DWELL_MILLIS);
+        if (dwellMillis == 0) {
+            if (filter.confirm(key, result, generation)) {
+                deliver(context, event, null);
+            }
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        PendingResult pendingResult = goAsync();
+        FenceDispatcher.schedule(() -> {
+            if (filter.confirm(key, result, generation)) {
+                deliver(appContext, event, pendingResult);
+            } else if (pendingResult != null) {
+                pendingResult.finish();
+            }
+        }, dwellMillis);
+    }
+
+    private void deliver(Context context, FenceEvent event, @Nullable PendingResult pendingResult) {
+        if (isAsync()) {
+            FenceDispatcher.get(getClass()).enqueue(this, context.getApplicationContext(), event,
+                    pendingResult != null ? pendingResult : goAsync(), getBatchWindowMillis());
+            return;
+        }
+
+        try {
+            onUpdate(context, event);
+        } finally {
+            if (pendingResult != null) {
+                pendingResult.finish();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of updates of receivers of the given class that were suppressed by their
+     * {@link FlapPolicy}.
+     *
+     * @param receiverClass class of the receiver
+     * @return the number of suppressed updates
+     */
+    public static long getSuppressedUpdateCount(@NonNull Class<? extends FenceReceiver> receiverClass) {
+        return FlapFilter.suppressedCountOf(receiverClass);
+    }
+
+    /**
+     * Loads the data stored for a fence registered with
+     * {@link BackgroundFence#registerWithStoredData(Context, String, AwarenessFence, Bundle)}.
+     * The data is read from disk on every call.
+     *
+     * @param context context to use
+     * @param key     the key/name of the fence
+     * @return the stored data of the fence or {@code null} if it has none
+     */
+    @Nullable
+    protected final Bundle getStoredData(@NonNull Context context, @NonNull String key) {
+        return FencePayloadStore.get(context).get(key);
+    }
+
+    /**
+     * Whether updates should be appended to the {@link FenceJournal} before they are dispatched,
+     * which allows replaying them after the process died while handling them.
+     *
+     * @return {@code true} to journal updates, defaults to {@code false}
+     */
+    protected boolean isJournaled() {
+        return false;
+    }
+
+    /**
+     * Policy used to suppress flapping updates of the given fence. Dwell times are capped to
+     * {@link #MAX_DWELL_MILLIS} to stay within the broadcast timeout, and updates that had to
+     * dwell are delivered on a worker thread even if {@link #isAsync()} returns {@code false}.
+     * <p>
+     * The delivered state and the consecutive reports of each fence are persisted per receiver
+     * class, so reports which wake the process are filtered as well. A dwell time which was
+     * pending when the process died is lost.
+     *
+     * @param key the key/name of the fence
+     * @return the policy of the fence or {@code null} to deliver every update, which is the default
+     */
+    @Nullable
+    protected FlapPolicy getFlapPolicy(@NonNull String key) {
+        return null;
+    }
+
+    /**
+     * Whether updates should be delivered asynchronously on a worker thread. The broadcast is kept
+     * alive until the update was handled, but handling must still finish within the broadcast
+     * timeout of 10 seconds.
+     *
+     * @return {@code true} to deliver updates asynchronously, defaults to {@code false}
+     */
+    protected boolean isAsync() {
+        return false;
+    }
+
+    /**
+     * Time to wait for further updates before an asynchronous batch is delivered. Only used if
+     * {@link #isAsync()} returns {@code true}.
+     *
+     * @return the batch window in milliseconds, defaults to 100
+     */
+    protected long getBatchWindowMillis() {
+        return 100;
+    }
+
+    /**
+     * Called on a worker thread with all updates of a batch if {@link #isAsync()} returns
+     * {@code true}. Updates are ordered by arrival, so updates of one fence are always in order.
+     * <p>
+     * Calls {@link #onUpdate(Context, FenceEvent)} for each update by default.
+     *
+     * @param context context to use
+     * @param events  updates of this batch
+     */
+    protected void onBatchUpdate(@NonNull Context context, @NonNull List<FenceEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            onUpdate(context, events.get(i));
+        }
+    }
+
+    /**
+     * Called once the fence changed it's state. Receivers which need the time or the journal
+     * sequence of the update override this instead of
+     * {@link #onUpdate(Context, String, boolean, Bundle)}, which is called by default.
+     *
+     * @param context context to use
+     * @param event   the update
+     */
+    protected void onUpdate(@NonNull Context context, @NonNull FenceEvent event) {
+        onUpdate(context, event.getKey(), event.getState(), event.getBundle());
     }
 
     /**
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.fence.AwarenessFence;
+import com.google.android.gms.awareness.fence.FenceStateMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Completable;
+
+/**
+ * Brings the registered background fences in line with a {@link FenceSet}.
+ * <p>
+ * Fences whose fingerprint matches the stored one and which are still registered are left
+ * untouched. Changed or missing fences are added, fences that were registered through an earlier
+ * {@link FenceSet} but are not part of the new one are removed. Fences registered by other means
+ * are never touched. All changes are sent in one batched update.
+ */
+class FenceReconciler {
+
+    private FenceReconciler() {
+        // no instances
+    }
+
+    /**
+     * @param context  context to use
+     * @param fenceSet desired fences
+     * @return Completable which completes once the registered fences match the fence set
+     */
+    static Completable reconcile(@NonNull Context context, @NonNull final FenceSet fenceSet) {
+        final Context applicationContext = context.getApplicationContext();
+        final FenceFingerprintStore store = new FenceFingerprintStore(applicationContext);
+
+        return FenceBackend.get(applicationContext).queryFences(null)
+                .flatMapCompletable(fenceStateMap -> reconcile(applicationContext, fenceSet, store, fenceStateMap));
+    }
+
+    private static Completable reconcile(Context context,
+                                         FenceSet fenceSet,
+                                         final FenceFingerprintStore store,
+                                         FenceStateMap fenceStateMap) {
+        Set<String> registered = fenceStateMap.getFenceKeys();
+        final Map<String, Long> stored = store.load();
+
+        final Map<String, Long> desired = new HashMap<>();
+        final Map<String, AwarenessFence> additions = new LinkedHashMap<>();
+        for (Map.Entry<String, AwarenessFence> entry : fenceSet.getFences().entrySet()) {
+            String name = entry.getKey();
+            long fingerprint = fenceSet.fingerprint(name);
+            desired.put(name, fingerprint);
+
+            Long storedFingerprint = stored.get(name);
+            if (!registered.contains(name) || storedFingerprint == null || storedFingerprint != fingerprint) {
+                additions.put(name, entry.getValue());
+            }
+        }
+
+        final List<String> removals = new ArrayList<>();
+        for (String name : stored.keySet()) {
+            if (!desired.containsKey(name) && registered.contains(name)) {
+                removals.add(name);
+            }
+        }
+
+        return BatchFenceUpdateCompletable.update(context, additions, fenceSet.getData(), removals)
+                .doOnComplete(() -> store.save(desired))
+                .doOnError(throwable -> {
+                    if (!(throwable instanceof FenceUpdateException)) {
+                        return;
+                    }
+
+                    // keep what was applied, so the next reconciliation only retries the failures
+                    Map<String, Long> applied = new HashMap<>(desired);
+                    for (String name : ((FenceUpdateException) throwable).getFailures().keySet()) {
+                        if (additions.containsKey(name)) {
+                            applied.remove(name);
+                        } else if (stored.containsKey(name)) {
+                            applied.put(name, stored.get(name));
+                        }
+                    }
+                    store.save(applied);
+                });
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.AwarenessFence;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The desired set of background fences of the application.
+ * <p>
+ * Pass it to {@link BackgroundFence#reconcile(android.content.Context, FenceSet)} to register
+ * exactly these fences while only touching the fences that actually changed.
+ */
+public final class FenceSet {
+
+    private final Map<String, AwarenessFence> fences;
+    private final Map<String, Bundle> data;
+
+    private FenceSet(Builder builder) {
+        this.fences = Collections.unmodifiableMap(new LinkedHashMap<>(builder.fences));
+        this.data = Collections.unmodifiableMap(new LinkedHashMap<>(builder.data));
+    }
+
+    /**
+     * @return fence descriptions keyed by their names
+     */
+    @NonNull
+    public Map<String, AwarenessFence> getFences() {
+        return fences;
+    }
+
+    /**
+     * @param name name of the fence
+     * @return the data attached to the fence or {@code null}
+     */
+    @Nullable
+    public Bundle getData(@NonNull String name) {
+        return data.get(name);
+    }
+
+    /**
+     * @return data of all fences which have data attached keyed by their names
+     */
+    @NonNull
+    Map<String, Bundle> getData() {
+        return data;
+    }
+
+    /**
+     * Computes the fingerprint of the fence with the given name. It changes whenever the fence
+     * description or its data changes.
+     *
+     * @param name name of the fence
+     * @return fingerprint of the fence
+     */
+    long fingerprint(@NonNull String name) {
+        long fingerprint = FenceIdentity.of(fences.get(name)).fingerprint();
+
+        Bundle bundle = data.get(name);
+        if (bundle != null) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeBundle(bundle);
+                fingerprint = 31 * fingerprint + FenceIdentity.hash64(parcel.marshall());
+            } finally {
+                parcel.recycle();
+            }
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Builder for {@link FenceSet}s.
+     */
+    public static final class Builder {
+
+        private final Map<String, AwarenessFence> fences = new LinkedHashMap<>();
+        private final Map<String, Bundle> data = new LinkedHashMap<>();
+
+        /**
+         * Adds a fence. Adding a fence with an already used name replaces the previous one.
+         *
+         * @param name  unique name of the fence
+         * @param fence the fence description
+         * @return this builder
+         */
+        @NonNull
+        public Builder add(@NonNull String name, @NonNull AwarenessFence fence) {
+            return add(name, fence, null);
+        }
+
+        /**
+         * Adds a fence with data attached as in
+         * {@link BackgroundFence#registerWithData(android.content.Context, String, AwarenessFence, Bundle)}.
+         * Adding a fence with an already used name replaces the previous one.
+         *
+         * @param name  unique name of the fence
+         * @param fence the fence description
+         * @param data  data to attach to the fence
+         * @return this builder
+         */
+        @NonNull
+        public Builder add(@NonNull String name, @NonNull AwarenessFence fence, @Nullable Bundle data) {
+            fences.put(name, fence);
+            if (data != null) {
+                this.data.put(name, data);
+            } else {
+                this.data.remove(name);
+            }
+            return this;
+        }
+
+        /**
+         * @return a new {@link FenceSet} with the fences of this builder
+         */
+        @NonNull
+        public FenceSet build() {
+            return new FenceSet(this);
+        }
+    }
+}
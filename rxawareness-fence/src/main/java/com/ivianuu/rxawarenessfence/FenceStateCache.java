@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.FenceState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Single;
+
+/**
+ * Local cache of the states of background fences.
+ * <p>
+ * The cache is updated by every {@link FenceReceiver} callback and by every query, entries of
+ * fences that get registered or unregistered are dropped. Entries older than the max age count as
+ * stale. Optionally the cache is persisted, so it survives process restarts.
+ * <p>
+ * Only fences whose states were delivered to a {@link FenceReceiver} are cached, since only those
+ * are kept up to date by the receiver. States of other fences, e.g. observable fences or fences
+ * registered outside of this library, are queried every time.
+ */
+class FenceStateCache {
+
+    private static final String PREFERENCES_NAME = "com.ivianuu.rxawarenessfence.FenceStateCache";
+
+    private static FenceStateCache instance;
+
+    private final Context context;
+    private final ConcurrentHashMap<String, CachedFenceState> states = new ConcurrentHashMap<>();
+
+    private volatile long maxAgeMillis = Long.MAX_VALUE;
+    @Nullable private volatile SharedPreferences preferences;
+
+    private FenceStateCache(Context context) {
+        this.context = context;
+    }
+
+    @NonNull
+    static synchronized FenceStateCache get(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FenceStateCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxAgeMillis max age of an entry until it is stale
+     * @param persistent   whether the entries should be persisted
+     */
+    synchronized void configure(long maxAgeMillis, boolean persistent) {
+        this.maxAgeMillis = maxAgeMillis;
+
+        if (persistent && preferences == null) {
+            SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+            restore(preferences);
+            this.preferences = preferences;
+        } else if (!persistent && preferences != null) {
+            preferences.edit().clear().apply();
+            preferences = null;
+        }
+    }
+
+    /**
+     * Stores the given state.
+     *
+     * @param state state to store
+     * @return the stored entry
+     */
+    @NonNull
+    CachedFenceState put(@NonNull FenceState state) {
+        CachedFenceState cachedState = CachedFenceState.from(state);
+        states.put(cachedState.getKey(), cachedState);
+
+        SharedPreferences preferences = this.preferences;
+        if (preferences != null) {
+            preferences.edit().putString(cachedState.getKey(), encode(cachedState)).apply();
+        }
+
+        return cachedState;
+    }
+
+    /**
+     * Drops the entry of the given fence.
+     *
+     * @param key key of the fence
+     */
+    void invalidate(@NonNull String key) {
+        states.remove(key);
+
+        SharedPreferences preferences = this.preferences;
+        if (preferences != null) {
+            preferences.edit().remove(key).apply();
+        }
+    }
+
+    /**
+     * Returns the states of the given fences. Fresh entries are served from the cache, only
+     * unknown or stale fences are queried.
+     *
+     * @param keys keys of the fences
+     * @return Single map of the states keyed by fence key. Fences which are not registered are
+     * missing
+     */
+    @NonNull
+    Single<Map<String, CachedFenceState>> query(@NonNull final Collection<String> keys) {
+        return Single.defer(() -> {
+            final Map<String, CachedFenceState> result = new HashMap<>();
+            final List<String> missing = new ArrayList<>();
+            long now = System.currentTimeMillis();
+
+            for (String key : keys) {
+                CachedFenceState state = states.get(key);
+                if (state != null && now - state.getCachedAtMillis() <= maxAgeMillis) {
+                    result.put(key, state);
+                } else {
+                    missing.add(key);
+                }
+            }
+
+            if (missing.isEmpty()) {
+                return Single.just(result);
+            }
+
+            return FenceBackend.get(context).queryFences(missing)
+                    .map(fenceStateMap -> {
+                        for (String key : fenceStateMap.getFenceKeys()) {
+                            FenceState fenceState = fenceStateMap.getFenceState(key);
+                            // only refresh entries of fences which reach a receiver
+                            CachedFenceState state = states.containsKey(key)
+                                    ? put(fenceState) : CachedFenceState.from(fenceState);
+                            if (missing.contains(key)) {
+                                result.put(key, state);
+                            }
+                        }
+                        return result;
+                    });
+        });
+    }
+
+    private void restore(SharedPreferences preferences) {
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                CachedFenceState state = decode(entry.getKey(), (String) entry.getValue());
+                if (state != null) {
+                    states.putIfAbsent(entry.getKey(), state);
+                }
+            }
+        }
+    }
+
+    private static String encode(CachedFenceState state) {
+        return state.getCurrentState() + ":" + state.getPreviousState() + ":"
+                + state.getLastFenceUpdateTimeMillis() + ":" + state.getCachedAtMillis();
+    }
+
+    @Nullable
+    private static CachedFenceState decode(String key, String value) {
+        String[] parts = value.split(":");
+        if (parts.length != 4) {
+            return null;
+        }
+
+        try {
+            return new CachedFenceState(key, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
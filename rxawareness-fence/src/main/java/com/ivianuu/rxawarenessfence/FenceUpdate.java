@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.app.PendingIntent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.AwarenessFence;
+import com.google.android.gms.awareness.fence.FenceUpdateRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fences to add and remove in one request to a {@link FenceBackend}.
+ */
+public final class FenceUpdate {
+
+    private final Map<String, AwarenessFence> additions;
+    private final Map<String, PendingIntent> pendingIntents;
+    private final Map<String, Bundle> data;
+    private final List<String> removals;
+
+    private FenceUpdate(Builder builder) {
+        this.additions = Collections.unmodifiableMap(builder.additions);
+        this.pendingIntents = Collections.unmodifiableMap(builder.pendingIntents);
+        this.data = Collections.unmodifiableMap(builder.data);
+        this.removals = Collections.unmodifiableList(builder.removals);
+    }
+
+    /**
+     * @return the fences to add keyed by their key
+     */
+    @NonNull
+    public Map<String, AwarenessFence> getAdditions() {
+        return additions;
+    }
+
+    /**
+     * @param key key of an added fence
+     * @return the pending intent the fence should deliver its states to
+     */
+    @NonNull
+    public PendingIntent getPendingIntent(@NonNull String key) {
+        PendingIntent pendingIntent = pendingIntents.get(key);
+        if (pendingIntent == null) {
+            throw new IllegalArgumentException("no fence is added with key " + key);
+        }
+        return pendingIntent;
+    }
+
+    /**
+     * @param key key of an added fence
+     * @return the data attached to the pending intent of the fence, if any
+     */
+    @Nullable
+    public Bundle getData(@NonNull String key) {
+        return data.get(key);
+    }
+
+    /**
+     * @return the keys of the fences to remove
+     */
+    @NonNull
+    public List<String> getRemovals() {
+        return removals;
+    }
+
+    /**
+     * @return the equivalent request of the Fence API
+     */
+    @NonNull
+    FenceUpdateRequest toRequest() {
+        FenceUpdateRequest.Builder builder = new FenceUpdateRequest.Builder();
+        for (String key : removals) {
+            builder.removeFence(key);
+        }
+        for (Map.Entry<String, AwarenessFence> entry : additions.entrySet()) {
+            builder.addFence(entry.getKey(), entry.getValue(), pendingIntents.get(entry.getKey()));
+        }
+        return builder.build();
+    }
+
+    static final class Builder {
+
+        private final Map<String, AwarenessFence> additions = new LinkedHashMap<>();
+        private final Map<String, PendingIntent> pendingIntents = new LinkedHashMap<>();
+        private final Map<String, Bundle> data = new LinkedHashMap<>();
+        private final List<String> removals = new ArrayList<>();
+
+        Builder addFence(String key, AwarenessFence fence, PendingIntent pendingIntent) {
+            return addFence(key, fence, pendingIntent, null);
+        }
+
+        Builder addFence(String key, AwarenessFence fence, PendingIntent pendingIntent, @Nullable Bundle data) {
+            additions.put(key, fence);
+            pendingIntents.put(key, pendingIntent);
+            if (data != null) {
+                this.data.put(key, data);
+            }
+            return this;
+        }
+
+        Builder removeFence(String key) {
+            removals.add(key);
+            return this;
+        }
+
+        FenceUpdate build() {
+            return new FenceUpdate(this);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.common.api.Status;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Exception thrown when some fences of a batched fence update could not be updated.
+ */
+public class FenceUpdateException extends RuntimeException {
+
+    private final Map<String, Status> failures;
+
+    FenceUpdateException(Map<String, Status> failures) {
+        super("Updating fences failed: " + failures.keySet());
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return the status of every fence that could not be updated keyed by the fence name
+     */
+    @NonNull
+    public Map<String, Status> getFailures() {
+        return failures;
+    }
+}
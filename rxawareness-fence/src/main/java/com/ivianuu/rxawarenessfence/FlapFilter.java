@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies {@link FlapPolicy}s to the reported states of fences.
+ * <p>
+ * Every report is first {@link #offer(String, boolean, FlapPolicy) offered}. If it is not
+ * suppressed right away, it has to be {@link #confirm(String, boolean, long) confirmed} after the
+ * dwell time, which fails if the fence flipped back in the meantime.
+ * <p>
+ * The filters of receivers persist the delivered and candidate state of every fence, so a report
+ * which wakes the process is filtered against the reports before the process died. Pending dwell
+ * times don't survive the process.
+ */
+class FlapFilter {
+
+    private static final String PREFERENCES_NAME_PREFIX = "com.ivianuu.rxawarenessfence.FlapFilter.";
+
+    private static final ConcurrentHashMap<Class<?>, FlapFilter> receiverFilters = new ConcurrentHashMap<>();
+
+    private final Map<String, KeyState> states = new HashMap<>();
+    private final AtomicLong suppressedCount;
+    @Nullable private final SharedPreferences preferences;
+
+    FlapFilter(@NonNull AtomicLong suppressedCount) {
+        this(suppressedCount, null);
+    }
+
+    FlapFilter(@NonNull AtomicLong suppressedCount, @Nullable SharedPreferences preferences) {
+        this.suppressedCount = suppressedCount;
+        this.preferences = preferences;
+
+        if (preferences != null) {
+            restore(preferences);
+        }
+    }
+
+    /**
+     * @param context       context to use
+     * @param receiverClass class of the receiver
+     * @return the persistent filter of the given receiver class
+     */
+    @NonNull
+    static FlapFilter get(@NonNull Context context, @NonNull Class<? extends FenceReceiver> receiverClass) {
+        FlapFilter filter = receiverFilters.get(receiverClass);
+        if (filter == null) {
+            SharedPreferences preferences = context.getApplicationContext()
+                    .getSharedPreferences(PREFERENCES_NAME_PREFIX + receiverClass.getName(), Context.MODE_PRIVATE);
+            FlapFilter newFilter = new FlapFilter(new AtomicLong(), preferences);
+            filter = receiverFilters.putIfAbsent(receiverClass, newFilter);
+            if (filter == null) {
+                filter = newFilter;
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * @param receiverClass class of the receiver
+     * @return the number of updates suppressed for the given receiver class in this process
+     */
+    static long suppressedCountOf(@NonNull Class<? extends FenceReceiver> receiverClass) {
+        FlapFilter filter = receiverFilters.get(receiverClass);
+        return filter != null ? filter.suppressedCount.get() : 0;
+    }
+
+    /**
+     * Offers a reported state.
+     *
+     * @param key    key of the fence
+     * @param state  reported state
+     * @param policy policy of the fence
+     * @return a token to confirm the state with after the dwell time or {@code -1} if the state
+     * is suppressed
+     */
+    synchronized long offer(@NonNull String key, boolean state, @NonNull FlapPolicy policy) {
+        KeyState keyState = states.get(key);
+        if (keyState == null) {
+            keyState = new KeyState();
+            states.put(key, keyState);
+        }
+
+        if (keyState.delivered != null && keyState.delivered == state) {
+            // flipped back before the pending state was confirmed
+            keyState.count = 0;
+            keyState.generation++;
+            save(key, keyState);
+            suppressedCount.incrementAndGet();
+            return -1;
+        }
+
+        if (keyState.count > 0 && keyState.candidate == state) {
+            keyState.count++;
+        } else {
+            keyState.candidate = state;
+            keyState.count = 1;
+            keyState.generation++;
+        }
+        save(key, keyState);
+
+        if (keyState.count < policy.getMinConsecutive()) {
+            suppressedCount.incrementAndGet();
+            return -1;
+        }
+
+        return keyState.generation;
+    }
+
+    /**
+     * Confirms an offered state once its dwell time passed.
+     *
+     * @param key        key of the fence
+     * @param state      offered state
+     * @param generation token returned by {@link #offer(String, boolean, FlapPolicy)}
+     * @return {@code true} if the state should be delivered now
+     */
+    synchronized boolean confirm(@NonNull String key, boolean state, long generation) {
+        KeyState keyState = states.get(key);
+
+        if (keyState == null
+                || keyState.generation != generation
+                || keyState.candidate != state
+                || (keyState.delivered != null && keyState.delivered == state)) {
+            suppressedCount.incrementAndGet();
+            return false;
+        }
+
+        keyState.delivered = state;
+        keyState.count = 0;
+        save(key, keyState);
+        return true;
+    }
+
+    private void save(String key, KeyState keyState) {
+        if (preferences != null) {
+            preferences.edit().putString(key, encode(keyState)).apply();
+        }
+    }
+
+    private void restore(SharedPreferences preferences) {
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                KeyState keyState = decode((String) entry.getValue());
+                if (keyState != null) {
+                    states.put(entry.getKey(), keyState);
+                }
+            }
+        }
+    }
+
+    private static String encode(KeyState keyState) {
+        int delivered = keyState.delivered == null ? -1 : keyState.delivered ? 1 : 0;
+        return delivered + ":" + (keyState.candidate ? 1 : 0) + ":" + keyState.count;
+    }
+
+    @Nullable
+    private static KeyState decode(String value) {
+        String[] parts = value.split(":");
+        if (parts.length != 3) {
+            return null;
+        }
+
+        try {
+            int delivered = Integer.parseInt(parts[0]);
+            KeyState keyState = new KeyState();
+            keyState.delivered = delivered < 0 ? null : delivered == 1;
+            keyState.candidate = Integer.parseInt(parts[1]) == 1;
+            keyState.count = Integer.parseInt(parts[2]);
+            return keyState;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class KeyState {
+        Boolean delivered;
+        boolean candidate;
+        int count;
+        long generation;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how state changes of a fence that flips back and forth near its boundary are
+ * suppressed.
+ * <p>
+ * A new state is only delivered once it was reported the min number of consecutive times and then
+ * held for the min dwell time without flipping back. Reports of the already delivered state are
+ * never delivered again.
+ */
+public final class FlapPolicy {
+
+    private final int minConsecutive;
+    private final long minDwellMillis;
+
+    private FlapPolicy(Builder builder) {
+        this.minConsecutive = builder.minConsecutive;
+        this.minDwellMillis = builder.minDwellMillis;
+    }
+
+    /**
+     * @return the number of consecutive reports a new state needs
+     */
+    public int getMinConsecutive() {
+        return minConsecutive;
+    }
+
+    /**
+     * @return the time in milliseconds a new state has to hold before it is delivered
+     */
+    public long getMinDwellMillis() {
+        return minDwellMillis;
+    }
+
+    /**
+     * Builder for {@link FlapPolicy}s. Defaults to one report and no dwell time, which only
+     * suppresses repeated reports of the same state.
+     */
+    public static final class Builder {
+
+        private int minConsecutive = 1;
+        private long minDwellMillis;
+
+        /**
+         * @param count number of consecutive reports a new state needs before it is delivered
+         * @return this builder
+         */
+        @NonNull
+        public Builder minConsecutive(int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("count must be at least 1");
+            }
+            this.minConsecutive = count;
+            return this;
+        }
+
+        /**
+         * @param time time a new state has to hold before it is delivered
+         * @param unit unit of the time
+         * @return this builder
+         */
+        @NonNull
+        public Builder minDwell(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("time must not be negative");
+            }
+            this.minDwellMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * @return a new {@link FlapPolicy} with the configuration of this builder
+         */
+        @NonNull
+        public FlapPolicy build() {
+            return new FlapPolicy(this);
+        }
+    }
+}
@@ -16,27 +16,26 @@
 
 package com.ivianuu.rxawarenessfence;
 
-import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
 
-import com.google.android.gms.awareness.Awareness;
 import com.google.android.gms.awareness.fence.AwarenessFence;
-import com.google.android.gms.awareness.fence.FenceState;
-import com.google.android.gms.awareness.fence.FenceUpdateRequest;
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
 import com.ivianuu.rxplayservices.ClientException;
-import com.ivianuu.rxplayservices.RxPlayServices;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Cancellable;
 import io.reactivex.functions.Function;
 
@@ -48,19 +47,21 @@ import io.reactivex.functions.Function;
  *
  * When you unsubscribe from the resulting {@link io.reactivex.disposables.Disposable} will also automatically
  * unregister the fence.
+ *
+ * All observable fences share one receiver and one PendingIntent, each subscription registers its
+ * fence under its own unique key.
  */
 public class ObservableFence implements ObservableOnSubscribe<Boolean> {
 
-    private static final String RECEIVER_ACTION = "ACTION_REACTIVE_AWARENESS";
-    private static final String OBSERVABLE_FENCE = "ObservableFence";
+    private static final AtomicLong suppressedCount = new AtomicLong();
 
     private final Context context;
-    private final GoogleApiClient googleApiClient;
+    private final FenceBackend backend;
     private final AwarenessFence fence;
 
-    private ObservableFence(Context context, GoogleApiClient client, AwarenessFence fence) {
+    private ObservableFence(Context context, FenceBackend backend, AwarenessFence fence) {
         this.context = context;
-        this.googleApiClient = client;
+        this.backend = backend;
         this.fence = fence;
     }
 
@@ -69,66 +70,145 @@ public class ObservableFence implements ObservableOnSubscribe<Boolean> {
      *
      * Unsubscribing from the resulting {@link io.reactivex.disposables.Disposable} will also unregister the fence.
      *
+     * Subscribers of structurally equal fences share one registration. Subscribers joining an
+     * existing registration immediately receive its last known state. The fence is unregistered
+     * once the last subscriber disposed, see {@link #setGracePeriod(long, TimeUnit)}.
+     *
      * @param context context to use
      * @param fence the fence to register
      * @return Observable state updates to the fences state where {@code true} means that the fence
      * condition is valid
      */
     public static Observable<Boolean> create(final Context context, final AwarenessFence fence) {
-        return RxPlayServices.observable(context.getApplicationContext(), Awareness.API)
-                .flatMap(client -> Observable.create(new ObservableFence(context, client, fence)));
+        return SharedFenceRegistry.observe(createUnshared(context, fence), fence);
+    }
+
+    /**
+     * Creates an observable fence like {@link #create(Context, AwarenessFence)} whose states are
+     * filtered by the given policy. Flapping states are suppressed per subscriber, the shared
+     * registration still sees every state.
+     *
+     * @param context context to use
+     * @param fence the fence to register
+     * @param policy policy used to suppress flapping states
+     * @return Observable state updates to the fences state where {@code true} means that the fence
+     * condition is valid
+     */
+    public static Observable<Boolean> create(final Context context, final AwarenessFence fence,
+                                             @NonNull final FlapPolicy policy) {
+        return create(context, fence)
+                .compose(upstream -> Observable.defer(() -> {
+                    FlapFilter filter = new FlapFilter(suppressedCount);
+                    return upstream.flatMap(state -> filterFlaps(filter, policy, state));
+                }));
+    }
+
+    /**
+     * @return the number of states suppressed by the {@link FlapPolicy}s of all observable fences
+     */
+    public static long getSuppressedStateCount() {
+        return suppressedCount.get();
+    }
+
+    private static Observable<Boolean> filterFlaps(FlapFilter filter, FlapPolicy policy, boolean state) {
+        long generation = filter.offer("", state, policy);
+        if (generation < 0) {
+            return Observable.empty();
+        }
+
+        if (policy.getMinDwellMillis() == 0) {
+            return filter.confirm("", state, generation) ? Observable.just(state) : Observable.<Boolean>empty();
+        }
+
+        // states arriving during the dwell time invalidate the generation of this one
+        return Observable.timer(policy.getMinDwellMillis(), TimeUnit.MILLISECONDS)
+                .filter(ignored -> filter.confirm("", state, generation))
+                .map(ignored -> state);
+    }
+
+    /**
+     * Sets how long a fence registration is kept after its last subscriber disposed. A subscriber
+     * arriving within this period reuses the registration, which avoids unregistering and
+     * registering the fence again during configuration changes. Defaults to {@code 0}.
+     *
+     * @param time grace period
+     * @param unit unit of the grace period
+     */
+    public static void setGracePeriod(long time, @NonNull TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("grace period must not be negative");
+        }
+        SharedFenceRegistry.setGracePeriod(time, unit);
+    }
+
+    /**
+     * Sets the looper and scheduler fence states are delivered on instead of the main thread.
+     * Subscribers which move the states to a background thread anyway save the hop through the
+     * main thread.
+     * <p>
+     * The states are received on the looper and emitted on one worker of the scheduler, so their
+     * order is kept on any scheduler. Changes apply once all observable fences were disposed.
+     *
+     * @param looper    looper to receive the states on, {@code null} for the main looper
+     * @param scheduler scheduler to emit the states on, {@code null} to emit them on the looper
+     */
+    public static void setCallbacks(@Nullable Looper looper, @Nullable Scheduler scheduler) {
+        FenceMultiplexer.setCallbacks(looper, scheduler);
+    }
+
+    /**
+     * Creates an observable fence with a registration of its own, which is not shared with
+     * subscribers of equal fences.
+     *
+     * @param context context to use
+     * @param fence the fence to register
+     * @return Observable state updates to the fences state
+     */
+    static Observable<Boolean> createUnshared(final Context context, final AwarenessFence fence) {
+        return Observable.defer(() -> Observable.create(
+                new ObservableFence(context, FenceBackend.get(context), fence)));
     }
 
     @Override
     public void subscribe(final ObservableEmitter<Boolean> emitter) throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                FenceState state = FenceState.extract(intent);
-                boolean result = state.getCurrentState() == FenceState.TRUE;
-                emitter.onNext(result);
-            }
-        };
-
-        context.registerReceiver(receiver, new IntentFilter(RECEIVER_ACTION));
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, fence.hashCode(), new Intent(RECEIVER_ACTION), 0);
-
-        FenceUpdateRequest fenceUpdateRequest = new FenceUpdateRequest.Builder()
-                .addFence(OBSERVABLE_FENCE, fence, pendingIntent)
+        final FenceMultiplexer multiplexer = FenceMultiplexer.get(context);
+        final String key = multiplexer.add(emitter);
+
+        FenceUpdate update = new FenceUpdate.Builder()
+                .addFence(key, fence, multiplexer.pendingIntent())
                 .build();
 
-        Awareness.FenceApi.updateFences(googleApiClient, fenceUpdateRequest)
-                .setResultCallback(status -> {
+        final long requestStartNanos = System.nanoTime();
+        final Disposable registration = backend.updateFences(update)
+                .subscribe(status -> {
+                    FenceMetrics.get().onRequestFinished(FenceMetrics.OPERATION_OBSERVABLE_REGISTER, status.getStatusCode(),
+                            System.nanoTime() - requestStartNanos, 0);
                     if (!status.isSuccess()) {
                         emitter.onError(new ClientException("Error adding observable fence. " + status.getStatusMessage()));
                     }
-                    emitter.onComplete();
-                });
+                }, emitter::onError);
 
         emitter.setCancellable(() -> {
-            context.unregisterReceiver(receiver);
-            unregisterFenceRequest(googleApiClient, emitter);
+            registration.dispose();
+            multiplexer.remove(key);
+            unregisterFenceRequest(key);
         });
     }
 
-
-    private void unregisterFenceRequest(final GoogleApiClient googleApiClient, final ObservableEmitter<Boolean> emitter) {
-        FenceUpdateRequest fenceUpdateRequest = new FenceUpdateRequest.Builder()
-                .removeFence(OBSERVABLE_FENCE)
+    private void unregisterFenceRequest(String key) {
+        FenceUpdate update = new FenceUpdate.Builder()
+                .removeFence(key)
                 .build();
 
-        Awareness.FenceApi.updateFences(googleApiClient, fenceUpdateRequest)
-                .setResultCallback(status -> {
+        final long requestStartNanos = System.nanoTime();
+        //noinspection ResultOfMethodCallIgnored
+        backend.updateFences(update)
+                .subscribe(status -> {
+                    FenceMetrics.get().onRequestFinished(FenceMetrics.OPERATION_OBSERVABLE_UNREGISTER, status.getStatusCode(),
+                            System.nanoTime() - requestStartNanos, 0);
                     if (!status.isSuccess()) {
-                        emitter.onError(new ClientException("Error removing observable fence. " + status.getStatusMessage()));
-                    }
-
-                    if (googleApiClient.isConnecting() || googleApiClient.isConnected()) {
-                        googleApiClient.disconnect();
+                        Log.e("ReactiveAwareness", "Error removing observable fence. " + status.getStatusMessage());
                     }
-                    emitter.onComplete();
-                });
+                }, throwable -> Log.e("ReactiveAwareness", "Error removing observable fence", throwable));
     }
-
-
-}
\ No newline at end of file
+}
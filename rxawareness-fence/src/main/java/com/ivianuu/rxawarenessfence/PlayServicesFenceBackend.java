@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.Awareness;
+import com.google.android.gms.awareness.fence.FenceQueryRequest;
+import com.google.android.gms.awareness.fence.FenceQueryResult;
+import com.google.android.gms.awareness.fence.FenceStateMap;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.ivianuu.rxplayservices.ClientException;
+import com.ivianuu.rxplayservices.RxPlayServices;
+
+import java.util.Collection;
+
+import io.reactivex.Single;
+
+/**
+ * {@link FenceBackend} that uses the Fence API, every request connects its own client.
+ */
+class PlayServicesFenceBackend extends FenceBackend {
+
+    private final Context context;
+
+    PlayServicesFenceBackend(@NonNull Context context) {
+        this.context = context;
+    }
+
+    @NonNull
+    @Override
+    public Single<Status> updateFences(@NonNull final FenceUpdate update) {
+        return Single.defer(() -> {
+            final long connectStartNanos = System.nanoTime();
+
+            return RxPlayServices.observable(context, Awareness.API)
+                    .flatMap(client -> {
+                        FenceMetrics.get().onClientConnected(System.nanoTime() - connectStartNanos);
+
+                        return Single.<Status>create(emitter -> {
+                            PendingResult<Status> pendingResult = Awareness.FenceApi.updateFences(client, update.toRequest());
+                            pendingResult.setResultCallback(status -> {
+                                client.disconnect();
+                                emitter.onSuccess(status);
+                            });
+                        }).toObservable();
+                    })
+                    .take(1)
+                    .singleOrError();
+        });
+    }
+
+    /**
+     * Reports failed queries with their status code as well, the timings are taken per
+     * subscription.
+     */
+    @NonNull
+    @Override
+    public Single<FenceStateMap> queryFences(@Nullable final Collection<String> keys) {
+        return Single.defer(() -> {
+            final long connectStartNanos = System.nanoTime();
+            final FenceQueryRequest request = keys != null
+                    ? FenceQueryRequest.forFences(keys)
+                    : FenceQueryRequest.all();
+
+            return RxPlayServices.observable(context, Awareness.API)
+                    .flatMap(client -> {
+                        FenceMetrics.get().onClientConnected(System.nanoTime() - connectStartNanos);
+
+                        return Single.<FenceStateMap>create(emitter -> {
+                            final long requestStartNanos = System.nanoTime();
+                            PendingResult<FenceQueryResult> pendingResult = Awareness.FenceApi.queryFences(client, request);
+                            pendingResult.setResultCallback(result -> {
+                                client.disconnect();
+                                long requestNanos = System.nanoTime() - requestStartNanos;
+                                int statusCode = result.getStatus().getStatusCode();
+
+                                if (!result.getStatus().isSuccess()) {
+                                    FenceMetrics.get().onRequestFinished(FenceMetrics.OPERATION_QUERY, statusCode, requestNanos, 0);
+                                    emitter.onError(new ClientException("Error querying fences. " + result.getStatus().getStatusMessage()));
+                                    return;
+                                }
+
+                                long unwrapStartNanos = System.nanoTime();
+                                FenceStateMap fenceStateMap = result.getFenceStateMap();
+                                FenceMetrics.get().onRequestFinished(FenceMetrics.OPERATION_QUERY, statusCode,
+                                        requestNanos, System.nanoTime() - unwrapStartNanos);
+                                emitter.onSuccess(fenceStateMap);
+                            });
+                        }).toObservable();
+                    })
+                    .take(1)
+                    .singleOrError();
+        });
+    }
+}
@@ -22,37 +22,55 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
-import com.google.android.gms.awareness.Awareness;
 import com.google.android.gms.awareness.fence.AwarenessFence;
-import com.google.android.gms.awareness.fence.FenceUpdateRequest;
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
 import com.ivianuu.rxplayservices.ClientException;
-import com.ivianuu.rxplayservices.RxPlayServices;
 
+import io.reactivex.Single;
 import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * Registers a background fence
+ * <p>
+ * The fence id and the stored data are written on the io scheduler, the stored data of the fence
+ * is only replaced once the registration succeeded.
  */
 class RegisterBackgroundFenceAction {
 
     private final Context context;
     private final Bundle data;
+    @Nullable private final Bundle storedData;
     private String name;
     private AwarenessFence fence;
 
     private RegisterBackgroundFenceAction(Context context,
                                           String name,
                                           AwarenessFence fence,
-                                          @Nullable Bundle data) {
+                                          @Nullable Bundle data,
+                                          @Nullable Bundle storedData) {
         this.context = context;
         this.name = name;
         this.fence = fence;
         this.data = data;
+        this.storedData = storedData;
 
-        RxPlayServices.actions(context, Awareness.API, this::onClientConnected, this::onClientError);
+        final FenceBackend backend = FenceBackend.get(context);
+        //noinspection ResultOfMethodCallIgnored
+        Single
+                .fromCallable(() -> new FenceUpdate.Builder()
+                        .addFence(name, fence, FenceReceiver.createPendingIntent(context, FenceIdAllocator.get(context).idOf(name), data), data)
+                        .build())
+                .subscribeOn(Schedulers.io())
+                .flatMap(update -> {
+                    final long requestStartNanos = System.nanoTime();
+                    return backend.updateFences(update)
+                            .doOnSuccess(status -> FenceMetrics.get().onRequestFinished(FenceMetrics.OPERATION_REGISTER,
+                                    status.getStatusCode(), System.nanoTime() - requestStartNanos, 0));
+                })
+                .observeOn(Schedulers.io())
+                .subscribe(this::onResult, this::onClientError);
     }
 
     /**
@@ -63,7 +81,7 @@ class RegisterBackgroundFenceAction {
      * @param fence   fence to register
      */
     static void register(Context context, String name, AwarenessFence fence) {
-        new RegisterBackgroundFenceAction(context.getApplicationContext(), name, fence, null);
+        new RegisterBackgroundFenceAction(context.getApplicationContext(), name, fence, null, null);
     }
 
     /**
@@ -80,21 +98,40 @@ class RegisterBackgroundFenceAction {
                                  String name,
                                  AwarenessFence fence,
                                  @Nullable Bundle data) {
-        new RegisterBackgroundFenceAction(context.getApplicationContext(), name, fence, data);
+        new RegisterBackgroundFenceAction(context.getApplicationContext(), name, fence, data, null);
     }
 
-    private void onClientConnected(final GoogleApiClient googleApiClient) {
-        FenceUpdateRequest fenceRequest = new FenceUpdateRequest.Builder()
-                .addFence(name, fence, FenceReceiver.createPendingIntent(context, fence.hashCode(), data))
-                .build();
+    /**
+     * Registers the given fence and stores its data in the {@link FencePayloadStore} instead of
+     * attaching it to the PendingIntent.
+     * <p>
+     * Will receive updates in the background.
+     *
+     * @param context context to use
+     * @param name    name of the fence
+     * @param fence   fence to register
+     * @param data    data to store for the fence
+     */
+    static void registerWithStoredData(Context context,
+                                       String name,
+                                       AwarenessFence fence,
+                                       @NonNull Bundle data) {
+        new RegisterBackgroundFenceAction(context.getApplicationContext(), name, fence, null, data);
+    }
+
+    private void onResult(Status status) {
+        FenceStateCache.get(context).invalidate(name);
+        if (!status.isSuccess()) {
+            // the fence keeps its previous registration and data
+            onClientError(new ClientException("Adding fence failed. " + status.getStatusMessage()));
+            return;
+        }
 
-        Awareness.FenceApi.updateFences(googleApiClient, fenceRequest)
-                .setResultCallback(status -> {
-                    if (!status.isSuccess()) {
-                        onClientError(new ClientException("Adding fence failed. " + status.getStatusMessage()));
-                    }
-                    googleApiClient.disconnect();
-                });
+        if (storedData != null) {
+            FencePayloadStore.get(context).put(name, storedData);
+        } else {
+            FencePayloadStore.get(context).remove(name);
+        }
     }
 
     private void onClientError(Throwable throwable) {
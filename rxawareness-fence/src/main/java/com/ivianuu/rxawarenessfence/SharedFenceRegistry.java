@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.fence.AwarenessFence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observables.ConnectableObservable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Shares one fence registration between all subscribers of structurally equal fences.
+ * <p>
+ * The registration is created with the first subscriber and replays the last known state to
+ * later ones. Once the last subscriber disposed, the registration is removed after the grace
+ * period, unless a new subscriber arrives in the meantime.
+ */
+class SharedFenceRegistry {
+
+    private static final Map<FenceIdentity, SharedFence> fences = new HashMap<>();
+    private static volatile long gracePeriodMillis;
+
+    private SharedFenceRegistry() {
+        // no instances
+    }
+
+    static void setGracePeriod(long time, @NonNull TimeUnit unit) {
+        gracePeriodMillis = unit.toMillis(time);
+    }
+
+    /**
+     * @param source creates the actual registration of the fence
+     * @param fence  fence to observe
+     * @return Observable sharing the registration with all subscribers of equal fences
+     */
+    @NonNull
+    static Observable<Boolean> observe(@NonNull final Observable<Boolean> source, @NonNull AwarenessFence fence) {
+        final FenceIdentity identity = FenceIdentity.of(fence);
+
+        return Observable.defer(() -> {
+            // a fence removed between the lookup and the acquire must not be connected again
+            while (true) {
+                SharedFence sharedFence;
+                synchronized (fences) {
+                    sharedFence = fences.get(identity);
+                    if (sharedFence == null) {
+                        sharedFence = new SharedFence(identity, source);
+                        fences.put(identity, sharedFence);
+                    }
+                }
+
+                if (sharedFence.acquire()) {
+                    return sharedFence.connectable.doFinally(sharedFence::release);
+                }
+            }
+        });
+    }
+
+    private static void remove(FenceIdentity identity, SharedFence sharedFence) {
+        synchronized (fences) {
+            if (fences.get(identity) == sharedFence) {
+                fences.remove(identity);
+            }
+        }
+    }
+
+    private static final class SharedFence {
+
+        private final FenceIdentity identity;
+        private final ConnectableObservable<Boolean> connectable;
+
+        private int subscribers;
+        private boolean removed;
+        private Disposable connection;
+        private Disposable graceTimer;
+
+        SharedFence(FenceIdentity identity, Observable<Boolean> source) {
+            this.identity = identity;
+            // a failed registration must not be replayed to future subscribers
+            this.connectable = source
+                    .doOnError(throwable -> remove(identity, this))
+                    .replay(1);
+        }
+
+        /**
+         * @return {@code false} if this fence was already removed from the registry and has to
+         * be looked up again
+         */
+        private synchronized boolean acquire() {
+            if (removed) {
+                return false;
+            }
+
+            subscribers++;
+
+            if (graceTimer != null) {
+                graceTimer.dispose();
+                graceTimer = null;
+            }
+
+            if (connection == null) {
+                connection = connectable.connect();
+            }
+            return true;
+        }
+
+        private synchronized void release() {
+            if (--subscribers > 0) {
+                return;
+            }
+
+            long gracePeriod = gracePeriodMillis;
+            if (gracePeriod > 0) {
+                graceTimer = Schedulers.computation()
+                        .scheduleDirect(this::disconnectIfUnused, gracePeriod, TimeUnit.MILLISECONDS);
+            } else {
+                disconnectIfUnused();
+            }
+        }
+
+        private synchronized void disconnectIfUnused() {
+            if (subscribers > 0 || connection == null) {
+                return;
+            }
+
+            removed = true;
+            remove(identity, this);
+            connection.dispose();
+            connection = null;
+            graceTimer = null;
+        }
+    }
+}
@@ -20,26 +20,37 @@ import android.content.Context;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
-import com.google.android.gms.awareness.Awareness;
-import com.google.android.gms.awareness.fence.FenceUpdateRequest;
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
 import com.ivianuu.rxplayservices.ClientException;
-import com.ivianuu.rxplayservices.RxPlayServices;
 
 import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * Action to unregister a background fence.
  */
 class UnregisterBackgroundFenceAction {
 
+    private final Context context;
     private String name;
 
     private UnregisterBackgroundFenceAction(Context context, String name) {
+        this.context = context;
         this.name = name;
-        RxPlayServices.actions(context, Awareness.API, this::onClientConnected, this::onClientError);
+
+        FenceUpdate update = new FenceUpdate.Builder()
+                .removeFence(name)
+                .build();
+
+        final long requestStartNanos = System.nanoTime();
+        //noinspection ResultOfMethodCallIgnored
+        FenceBackend.get(context).updateFences(update)
+                .doOnSuccess(status -> FenceMetrics.get().onRequestFinished(FenceMetrics.OPERATION_UNREGISTER,
+                        status.getStatusCode(), System.nanoTime() - requestStartNanos, 0))
+                // releasing the id and the stored data writes files
+                .observeOn(Schedulers.io())
+                .subscribe(this::onResult, this::onClientError);
     }
 
     /**
@@ -52,18 +63,14 @@ class UnregisterBackgroundFenceAction {
         new UnregisterBackgroundFenceAction(context.getApplicationContext(), name);
     }
 
-    private void onClientConnected(final GoogleApiClient googleApiClient) {
-        FenceUpdateRequest fenceRequest = new FenceUpdateRequest.Builder()
-                .removeFence(name)
-                .build();
-
-        Awareness.FenceApi.updateFences(googleApiClient, fenceRequest)
-                .setResultCallback(status -> {
-                    if (!status.isSuccess()) {
-                        onClientError(new ClientException("Unable to unregister fence. " + status.getStatusMessage()));
-                    }
-                    googleApiClient.disconnect();
-                });
+    private void onResult(Status status) {
+        FenceStateCache.get(context).invalidate(name);
+        if (status.isSuccess()) {
+            FencePayloadStore.get(context).remove(name);
+            FenceIdAllocator.get(context).release(name);
+        } else {
+            onClientError(new ClientException("Unable to unregister fence. " + status.getStatusMessage()));
+        }
     }
 
     private void onClientError(Throwable throwable) {
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FenceDispatcherTest {
+
+    private final Context context = new ContextWrapper(null);
+    private Thread.UncaughtExceptionHandler defaultHandler;
+
+    @Before
+    public void setUp() {
+        defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+    }
+
+    @After
+    public void tearDown() {
+        Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+    }
+
+    @Test
+    public void deliversEventsAsOneBatch() throws InterruptedException {
+        BatchReceiver receiver = new BatchReceiver();
+        FenceDispatcher dispatcher = FenceDispatcher.get(BatchReceiver.class);
+
+        dispatcher.enqueue(receiver, context, event("first"), null, 50);
+        dispatcher.enqueue(receiver, context, event("second"), null, 50);
+
+        assertTrue(receiver.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(2, receiver.batch.size());
+        assertEquals("first", receiver.batch.get(0).getKey());
+        assertEquals("second", receiver.batch.get(1).getKey());
+    }
+
+    @Test
+    public void passesReceiverExceptionsToUncaughtExceptionHandler() throws InterruptedException {
+        final AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        final CountDownLatch crashed = new CountDownLatch(1);
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+            uncaught.set(throwable);
+            crashed.countDown();
+        });
+
+        FenceDispatcher.get(ThrowingReceiver.class)
+                .enqueue(new ThrowingReceiver(), context, event("fence"), null, 0);
+
+        assertTrue(crashed.await(5, TimeUnit.SECONDS));
+        assertTrue(uncaught.get() instanceof IllegalStateException);
+    }
+
+    private static FenceEvent event(String key) {
+        return new FenceEvent(key, true, null, 0, -1);
+    }
+
+    public static final class BatchReceiver extends FenceReceiver {
+
+        final CountDownLatch delivered = new CountDownLatch(1);
+        List<FenceEvent> batch;
+
+        @Override
+        protected void onBatchUpdate(@NonNull Context context, @NonNull List<FenceEvent> events) {
+            batch = new ArrayList<>(events);
+            delivered.countDown();
+        }
+
+        @Override
+        protected void onUpdate(@NonNull Context context, @NonNull String key, boolean state,
+                                @Nullable Bundle bundle) {
+        }
+    }
+
+    public static final class ThrowingReceiver extends FenceReceiver {
+
+        @Override
+        protected void onBatchUpdate(@NonNull Context context, @NonNull List<FenceEvent> events) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        protected void onUpdate(@NonNull Context context, @NonNull String key, boolean state,
+                                @Nullable Bundle bundle) {
+        }
+    }
+}
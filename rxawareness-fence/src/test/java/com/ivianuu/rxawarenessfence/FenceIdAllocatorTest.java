@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class FenceIdAllocatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void allocatesLowestFreeIdsStartingAtOne() throws IOException {
+        FenceIdAllocator allocator = new FenceIdAllocator(new File(folder.getRoot(), "ids"));
+
+        assertEquals(1, allocator.idOf("first"));
+        assertEquals(2, allocator.idOf("second"));
+        assertEquals(3, allocator.idOf("third"));
+    }
+
+    @Test
+    public void keepsIdOfFence() {
+        FenceIdAllocator allocator = new FenceIdAllocator(new File(folder.getRoot(), "ids"));
+
+        int id = allocator.idOf("fence");
+        allocator.idOf("other");
+
+        assertEquals(id, allocator.idOf("fence"));
+        assertEquals(id, allocator.peekId("fence"));
+    }
+
+    @Test
+    public void peekDoesNotAllocate() {
+        FenceIdAllocator allocator = new FenceIdAllocator(new File(folder.getRoot(), "ids"));
+
+        assertEquals(-1, allocator.peekId("fence"));
+        assertEquals(1, allocator.idOf("other"));
+    }
+
+    @Test
+    public void reusesReleasedIds() {
+        FenceIdAllocator allocator = new FenceIdAllocator(new File(folder.getRoot(), "ids"));
+        allocator.idOf("first");
+        allocator.idOf("second");
+        allocator.idOf("third");
+
+        allocator.release("second");
+
+        assertEquals(-1, allocator.peekId("second"));
+        assertEquals(2, allocator.idOf("fourth"));
+        assertEquals(4, allocator.idOf("fifth"));
+    }
+
+    @Test
+    public void releasingUnknownFenceHasNoEffect() {
+        FenceIdAllocator allocator = new FenceIdAllocator(new File(folder.getRoot(), "ids"));
+        allocator.idOf("first");
+
+        allocator.release("unknown");
+
+        assertEquals(2, allocator.idOf("second"));
+    }
+
+    @Test
+    public void persistsIds() {
+        File file = new File(folder.getRoot(), "ids");
+        FenceIdAllocator allocator = new FenceIdAllocator(file);
+        allocator.idOf("first");
+        allocator.idOf("second");
+        allocator.idOf("third");
+        allocator.release("first");
+
+        FenceIdAllocator reloaded = new FenceIdAllocator(file);
+
+        assertEquals(-1, reloaded.peekId("first"));
+        assertEquals(2, reloaded.peekId("second"));
+        assertEquals(3, reloaded.peekId("third"));
+        assertEquals(1, reloaded.idOf("fourth"));
+    }
+
+    @Test
+    public void startsOverWithUnknownVersion() throws IOException {
+        File file = new File(folder.getRoot(), "ids");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[]{0, 0, 0, 42, 0, 0, 0, 0});
+        } finally {
+            out.close();
+        }
+
+        FenceIdAllocator allocator = new FenceIdAllocator(file);
+
+        assertEquals(1, allocator.idOf("fence"));
+    }
+}
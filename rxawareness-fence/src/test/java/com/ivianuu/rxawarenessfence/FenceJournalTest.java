@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FenceJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendsRecordsWithIncreasingSequences() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+
+        assertEquals(0, journal.append("first", true, 1000));
+        assertEquals(1, journal.append("second", false, 2000));
+        assertEquals(0, journal.getStartSequence());
+        assertEquals(2, journal.getEndSequence());
+    }
+
+    @Test
+    public void replaysRecords() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        journal.append("first", true, 1000);
+        journal.append("second", false, 2000);
+
+        List<FenceJournal.Entry> entries = journal.replay(0);
+
+        assertEquals(2, entries.size());
+        assertEntry(entries.get(0), 0, "first", true, 1000);
+        assertEntry(entries.get(1), 1, "second", false, 2000);
+        assertEquals(FenceIdentity.hash64("first".getBytes("UTF-8")), entries.get(0).getKeyHash());
+    }
+
+    @Test
+    public void replaysFromSequence() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        journal.append("first", true, 1000);
+        journal.append("second", false, 2000);
+        journal.append("third", true, 3000);
+
+        List<FenceJournal.Entry> entries = journal.replay(2);
+
+        assertEquals(1, entries.size());
+        assertEntry(entries.get(0), 2, "third", true, 3000);
+        assertTrue(journal.replay(3).isEmpty());
+    }
+
+    @Test
+    public void keepsRecordsAcrossReopening() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        journal.append("first", true, 1000);
+        journal.append("second", false, 2000);
+
+        FenceJournal reopened = new FenceJournal(folder.getRoot());
+
+        assertEquals(2, reopened.getEndSequence());
+        assertEquals(2, reopened.append("third", true, 3000));
+        assertEntry(reopened.replay(0).get(1), 1, "second", false, 2000);
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        for (int i = 0; i < 200; i++) {
+            journal.append("fence" + i, i % 2 == 0, i);
+        }
+
+        List<FenceJournal.Entry> entries = new FenceJournal(folder.getRoot()).replay(0);
+
+        assertEquals(200, entries.size());
+        assertEntry(entries.get(199), 199, "fence199", false, 199);
+    }
+
+    @Test
+    public void compactionKeepsSequences() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        journal.append("first", true, 1000);
+        journal.append("second", false, 2000);
+        journal.append("third", true, 3000);
+
+        journal.compact(2);
+
+        assertEquals(2, journal.getStartSequence());
+        assertEquals(3, journal.getEndSequence());
+        List<FenceJournal.Entry> entries = journal.replay(0);
+        assertEquals(1, entries.size());
+        assertEntry(entries.get(0), 2, "third", true, 3000);
+
+        assertEquals(3, journal.append("fourth", false, 4000));
+        assertEntry(new FenceJournal(folder.getRoot()).replay(3).get(0), 3, "fourth", false, 4000);
+    }
+
+    @Test
+    public void compactionDeletesOldPayloads() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        journal.append("first", true, 1000);
+        journal.append("second", false, 2000);
+
+        journal.compact(1);
+
+        String[] names = folder.getRoot().list();
+        int payloadFiles = 0;
+        for (String name : names) {
+            if (name.contains(".payload.")) {
+                payloadFiles++;
+            }
+        }
+        assertEquals(1, payloadFiles);
+    }
+
+    @Test
+    public void compactsOnWorkerThreadOnceFull() throws Exception {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        for (int i = 0; i < FenceJournal.MAX_RECORDS; i++) {
+            journal.append("fence", true, i);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (journal.getStartSequence() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(FenceJournal.MAX_RECORDS / 2, journal.getStartSequence());
+        assertEquals(FenceJournal.MAX_RECORDS, journal.getEndSequence());
+        assertEntry(journal.replay(0).get(0), FenceJournal.MAX_RECORDS / 2, "fence", true,
+                FenceJournal.MAX_RECORDS / 2);
+    }
+
+    @Test
+    public void keepsRecordsAppendedDuringCompaction() throws Exception {
+        final FenceJournal journal = new FenceJournal(folder.getRoot());
+        final int records = 2000;
+        final Exception[] failure = new Exception[1];
+
+        Thread appender = new Thread(() -> {
+            try {
+                for (int i = 0; i < records; i++) {
+                    journal.append("fence" + i, i % 2 == 0, i);
+                }
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        appender.start();
+        while (appender.isAlive()) {
+            journal.compact(journal.getEndSequence() - 10);
+        }
+        appender.join();
+
+        assertNull(failure[0]);
+        assertEquals(records, journal.getEndSequence());
+        FenceJournal reopened = new FenceJournal(folder.getRoot());
+        List<FenceJournal.Entry> entries = reopened.replay(0);
+        long start = reopened.getStartSequence();
+        assertEquals(records - start, entries.size());
+        for (FenceJournal.Entry entry : entries) {
+            int i = (int) entry.getSequence();
+            assertEntry(entry, i, "fence" + i, i % 2 == 0, i);
+        }
+    }
+
+    @Test
+    public void startsOverWithCorruptHeader() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        journal.append("first", true, 1000);
+        journal.append("second", false, 2000);
+
+        RandomAccessFile file = new RandomAccessFile(journalFile(), "rw");
+        try {
+            file.writeInt(0);
+        } finally {
+            file.close();
+        }
+
+        FenceJournal reopened = new FenceJournal(folder.getRoot());
+
+        assertEquals(0, reopened.getEndSequence());
+        assertEquals(0, reopened.append("third", true, 3000));
+        assertEntry(reopened.replay(0).get(0), 0, "third", true, 3000);
+    }
+
+    @Test
+    public void ignoresUncommittedRecords() throws IOException {
+        FenceJournal journal = new FenceJournal(folder.getRoot());
+        journal.append("first", true, 1000);
+        journal.append("second", false, 2000);
+
+        // clears the commit flag of the second record, like a crash while writing it
+        RandomAccessFile file = new RandomAccessFile(journalFile(), "rw");
+        try {
+            file.seek(24 + 32 + 29);
+            file.writeByte(0);
+        } finally {
+            file.close();
+        }
+
+        FenceJournal reopened = new FenceJournal(folder.getRoot());
+
+        assertEquals(1, reopened.getEndSequence());
+        assertFalse(reopened.replay(0).isEmpty());
+        assertEquals(1, reopened.append("third", true, 3000));
+        assertEntry(reopened.replay(1).get(0), 1, "third", true, 3000);
+    }
+
+    private File journalFile() {
+        return new File(folder.getRoot(), "rxawareness_fence_journal");
+    }
+
+    private static void assertEntry(FenceJournal.Entry entry, long sequence, String key, boolean state,
+                                    long timestampMillis) {
+        assertEquals(sequence, entry.getSequence());
+        assertEquals(key, entry.getKey());
+        assertEquals(state, entry.getState());
+        assertEquals(timestampMillis, entry.getTimestampMillis());
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.fence.FenceState;
+import com.google.android.gms.awareness.fence.FenceStateMap;
+import com.google.android.gms.common.api.Status;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Single;
+
+import static org.junit.Assert.assertEquals;
+
+public class FenceStateCacheTest {
+
+    private final CountingBackend backend = new CountingBackend();
+    private final FenceStateCache cache = FenceStateCache.get(new TestContext());
+
+    @Before
+    public void setUp() {
+        FenceBackend.set(backend);
+    }
+
+    @After
+    public void tearDown() {
+        FenceBackend.set(null);
+    }
+
+    @Test
+    public void servesStatesDeliveredToReceiverFromCache() {
+        cache.put(new TestFenceState("delivered", FenceState.TRUE));
+
+        Map<String, CachedFenceState> states = cache.query(Collections.singletonList("delivered")).blockingGet();
+
+        assertEquals(FenceState.TRUE, states.get("delivered").getCurrentState());
+        assertEquals(0, backend.queries);
+    }
+
+    @Test
+    public void queriesFencesWhichNeverReachedReceiverEveryTime() {
+        backend.states.put("external", new TestFenceState("external", FenceState.TRUE));
+
+        cache.query(Collections.singletonList("external")).blockingGet();
+        backend.states.put("external", new TestFenceState("external", FenceState.FALSE));
+        Map<String, CachedFenceState> states = cache.query(Collections.singletonList("external")).blockingGet();
+
+        assertEquals(FenceState.FALSE, states.get("external").getCurrentState());
+        assertEquals(2, backend.queries);
+    }
+
+    @Test
+    public void queriesInvalidatedFences() {
+        cache.put(new TestFenceState("invalidated", FenceState.TRUE));
+        cache.invalidate("invalidated");
+        backend.states.put("invalidated", new TestFenceState("invalidated", FenceState.FALSE));
+
+        Map<String, CachedFenceState> states = cache.query(Collections.singletonList("invalidated")).blockingGet();
+
+        assertEquals(FenceState.FALSE, states.get("invalidated").getCurrentState());
+        assertEquals(1, backend.queries);
+    }
+
+    @Test
+    public void leavesUnregisteredFencesOut() {
+        Map<String, CachedFenceState> states = cache.query(Collections.singletonList("unknown")).blockingGet();
+
+        assertEquals(0, states.size());
+    }
+
+    private static final class CountingBackend extends FenceBackend {
+
+        final Map<String, FenceState> states = new HashMap<>();
+        int queries;
+
+        @NonNull
+        @Override
+        public Single<Status> updateFences(@NonNull FenceUpdate update) {
+            return Single.error(new UnsupportedOperationException());
+        }
+
+        @NonNull
+        @Override
+        public Single<FenceStateMap> queryFences(@Nullable Collection<String> keys) {
+            queries++;
+            final Map<String, FenceState> result = new HashMap<>();
+            for (String key : keys) {
+                if (states.containsKey(key)) {
+                    result.put(key, states.get(key));
+                }
+            }
+            return Single.just(new FenceStateMap() {
+                @Override
+                public Set<String> getFenceKeys() {
+                    return result.keySet();
+                }
+
+                @Override
+                public FenceState getFenceState(String key) {
+                    return result.get(key);
+                }
+            });
+        }
+    }
+
+    private static final class TestFenceState extends FenceState {
+
+        private final String key;
+        private final int currentState;
+
+        TestFenceState(String key, int currentState) {
+            this.key = key;
+            this.currentState = currentState;
+        }
+
+        @Override
+        public int getCurrentState() {
+            return currentState;
+        }
+
+        @Override
+        public int getPreviousState() {
+            return FenceState.UNKNOWN;
+        }
+
+        @Override
+        public long getLastFenceUpdateTimeMillis() {
+            return 0;
+        }
+
+        @Override
+        public String getFenceKey() {
+            return key;
+        }
+    }
+
+    private static final class TestContext extends ContextWrapper {
+
+        TestContext() {
+            super(null);
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+    }
+}
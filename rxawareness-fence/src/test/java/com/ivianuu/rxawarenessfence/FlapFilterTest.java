@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenessfence;
+
+import android.content.SharedPreferences;
+import android.support.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlapFilterTest {
+
+    private static final FlapPolicy DEFAULT_POLICY = new FlapPolicy.Builder().build();
+
+    private final AtomicLong suppressedCount = new AtomicLong();
+
+    @Test
+    public void deliversNewStatesAndSuppressesRepeats() {
+        FlapFilter filter = new FlapFilter(suppressedCount);
+
+        assertTrue(deliver(filter, "fence", true, DEFAULT_POLICY));
+        assertEquals(-1, filter.offer("fence", true, DEFAULT_POLICY));
+        assertTrue(deliver(filter, "fence", false, DEFAULT_POLICY));
+        assertEquals(1, suppressedCount.get());
+    }
+
+    @Test
+    public void keysAreFilteredIndependently() {
+        FlapFilter filter = new FlapFilter(suppressedCount);
+
+        assertTrue(deliver(filter, "first", true, DEFAULT_POLICY));
+        assertTrue(deliver(filter, "second", true, DEFAULT_POLICY));
+    }
+
+    @Test
+    public void waitsForConsecutiveReports() {
+        FlapFilter filter = new FlapFilter(suppressedCount);
+        FlapPolicy policy = new FlapPolicy.Builder().minConsecutive(3).build();
+
+        assertEquals(-1, filter.offer("fence", true, policy));
+        assertEquals(-1, filter.offer("fence", true, policy));
+        assertTrue(deliver(filter, "fence", true, policy));
+        assertEquals(2, suppressedCount.get());
+    }
+
+    @Test
+    public void flipResetsConsecutiveReports() {
+        FlapFilter filter = new FlapFilter(suppressedCount);
+        FlapPolicy policy = new FlapPolicy.Builder().minConsecutive(2).build();
+
+        assertEquals(-1, filter.offer("fence", true, policy));
+        assertEquals(-1, filter.offer("fence", false, policy));
+        assertEquals(-1, filter.offer("fence", true, policy));
+        assertTrue(deliver(filter, "fence", true, policy));
+    }
+
+    @Test
+    public void flipDuringDwellInvalidatesPendingState() {
+        FlapFilter filter = new FlapFilter(suppressedCount);
+        FlapPolicy policy = new FlapPolicy.Builder().minDwell(1, TimeUnit.SECONDS).build();
+
+        long first = filter.offer("fence", true, policy);
+        long second = filter.offer("fence", false, policy);
+
+        assertFalse(filter.confirm("fence", true, first));
+        assertTrue(filter.confirm("fence", false, second));
+    }
+
+    @Test
+    public void flipBackToDeliveredStateSuppressesPendingState() {
+        FlapFilter filter = new FlapFilter(suppressedCount);
+        FlapPolicy policy = new FlapPolicy.Builder().minDwell(1, TimeUnit.SECONDS).build();
+        assertTrue(deliver(filter, "fence", true, policy));
+
+        long pending = filter.offer("fence", false, policy);
+        assertEquals(-1, filter.offer("fence", true, policy));
+
+        assertFalse(filter.confirm("fence", false, pending));
+        assertEquals(2, suppressedCount.get());
+    }
+
+    @Test
+    public void unknownKeysAreNotConfirmed() {
+        FlapFilter filter = new FlapFilter(suppressedCount);
+
+        assertFalse(filter.confirm("fence", true, 1));
+    }
+
+    @Test
+    public void restoresDeliveredStateFromPreferences() {
+        InMemoryPreferences preferences = new InMemoryPreferences();
+        FlapFilter filter = new FlapFilter(suppressedCount, preferences);
+        assertTrue(deliver(filter, "fence", true, DEFAULT_POLICY));
+
+        // a new process filters against the state delivered before
+        FlapFilter restored = new FlapFilter(suppressedCount, preferences);
+        assertEquals(-1, restored.offer("fence", true, DEFAULT_POLICY));
+        assertTrue(deliver(restored, "fence", false, DEFAULT_POLICY));
+    }
+
+    @Test
+    public void restoresConsecutiveReportsFromPreferences() {
+        InMemoryPreferences preferences = new InMemoryPreferences();
+        FlapPolicy policy = new FlapPolicy.Builder().minConsecutive(2).build();
+        FlapFilter filter = new FlapFilter(suppressedCount, preferences);
+        assertEquals(-1, filter.offer("fence", true, policy));
+
+        FlapFilter restored = new FlapFilter(suppressedCount, preferences);
+        assertTrue(deliver(restored, "fence", true, policy));
+    }
+
+    @Test
+    public void ignoresCorruptPreferences() {
+        InMemoryPreferences preferences = new InMemoryPreferences();
+        preferences.edit().putString("fence", "garbage").apply();
+
+        FlapFilter filter = new FlapFilter(suppressedCount, preferences);
+        assertTrue(deliver(filter, "fence", true, DEFAULT_POLICY));
+    }
+
+    private static boolean deliver(FlapFilter filter, String key, boolean state, FlapPolicy policy) {
+        long generation = filter.offer(key, state, policy);
+        return generation >= 0 && filter.confirm(key, state, generation);
+    }
+
+    /**
+     * Preferences which apply edits right away and only support strings.
+     */
+    private static final class InMemoryPreferences implements SharedPreferences {
+
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Nullable
+        @Override
+        public String getString(String key, @Nullable String defValue) {
+            Object value = values.get(key);
+            return value instanceof String ? (String) value : defValue;
+        }
+
+        @Nullable
+        @Override
+        public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new Editor() {
+                @Override
+                public Editor putString(String key, @Nullable String value) {
+                    values.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putStringSet(String key, @Nullable Set<String> values) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Editor putInt(String key, int value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Editor putLong(String key, long value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Editor putFloat(String key, float value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Editor putBoolean(String key, boolean value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Editor remove(String key) {
+                    values.remove(key);
+                    return this;
+                }
+
+                @Override
+                public Editor clear() {
+                    values.clear();
+                    return this;
+                }
+
+                @Override
+                public boolean commit() {
+                    return true;
+                }
+
+                @Override
+                public void apply() {
+                }
+            };
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenesstesting;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.awareness.fence.AwarenessFence;
+import com.google.android.gms.awareness.fence.FenceState;
+import com.google.android.gms.awareness.fence.FenceStateMap;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+import com.ivianuu.rxawarenessfence.FenceBackend;
+import com.ivianuu.rxawarenessfence.FenceReceiver;
+import com.ivianuu.rxawarenessfence.FenceUpdate;
+import com.ivianuu.rxplayservices.ClientException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Deterministic in-memory {@link FenceBackend}.
+ * <p>
+ * Fences are kept in memory, their states only change through {@link #setState(String, boolean)}
+ * and {@link #setState(AwarenessFence, boolean)} or the scheduled variants of them. State changes
+ * are delivered in-process, without broadcasts, so they reach
+ * {@link com.ivianuu.rxawarenessfence.ObservableFence}s and the {@link FenceReceiver} set through
+ * {@link Builder#receiver(FenceReceiver)} synchronously on the thread that changed the state.
+ * Background fences are only delivered by sending their pending intents if no receiver is set,
+ * which needs an Android runtime.
+ * <p>
+ * Requests finish after a latency drawn from the configured {@link Latency} and fail with the
+ * configured error rate, failed updates report an error status like the Fence API. All
+ * randomness comes from one seeded {@link Random} and all timing happens on the configured
+ * {@link Scheduler}.
+ * <p>
+ * Use it through {@link com.ivianuu.rxawarenessfence.BackgroundFence#setBackend(FenceBackend)}.
+ */
+public final class FakeFenceBackend extends FenceBackend {
+
+    private static final String EXTRA_KEY = "com.ivianuu.rxawarenesstesting.FENCE_KEY";
+    private static final String EXTRA_CURRENT_STATE = "com.ivianuu.rxawarenesstesting.CURRENT_STATE";
+    private static final String EXTRA_PREVIOUS_STATE = "com.ivianuu.rxawarenesstesting.PREVIOUS_STATE";
+    private static final String EXTRA_TIME = "com.ivianuu.rxawarenesstesting.TIME";
+
+    private final Context context;
+    @Nullable private final FenceReceiver receiver;
+    private final Scheduler scheduler;
+    private final Random random;
+    private final Latency latency;
+    private final double errorRate;
+
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+    private final Map<AwarenessFence, Integer> fenceStates = new IdentityHashMap<>();
+
+    private FakeFenceBackend(Builder builder) {
+        this.context = builder.context;
+        this.receiver = builder.receiver;
+        this.scheduler = builder.scheduler;
+        this.random = new Random(builder.seed);
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+    }
+
+    @NonNull
+    @Override
+    public Single<Status> updateFences(@NonNull final FenceUpdate update) {
+        return respond(() -> {
+            List<Delivery> deliveries = new ArrayList<>();
+
+            synchronized (this) {
+                for (String key : update.getRemovals()) {
+                    release(registrations.remove(key));
+                }
+                for (Map.Entry<String, AwarenessFence> entry : update.getAdditions().entrySet()) {
+                    Registration registration = new Registration(entry.getValue(),
+                            update.getPendingIntent(entry.getKey()), update.getData(entry.getKey()));
+                    release(registrations.put(entry.getKey(), registration));
+
+                    // like the Fence API, report the known state of a new fence right away
+                    Integer state = fenceStates.get(entry.getValue());
+                    if (state != null) {
+                        deliveries.add(registration.transition(entry.getKey(), state, now()));
+                    }
+                }
+            }
+
+            deliver(deliveries);
+            return new Status(CommonStatusCodes.SUCCESS);
+        }, new Status(CommonStatusCodes.ERROR, "Fake fence update error"));
+    }
+
+    @NonNull
+    @Override
+    public Single<FenceStateMap> queryFences(@Nullable final Collection<String> keys) {
+        return respond(() -> {
+            Map<String, FenceState> states = new HashMap<>();
+
+            synchronized (this) {
+                Collection<String> queriedKeys = keys != null ? keys : registrations.keySet();
+                for (String key : queriedKeys) {
+                    Registration registration = registrations.get(key);
+                    if (registration != null) {
+                        states.put(key, new FakeFenceState(key, registration.state,
+                                registration.previousState, registration.timeMillis));
+                    }
+                }
+            }
+
+            return (FenceStateMap) new FakeFenceStateMap(states);
+        }, null);
+    }
+
+    @NonNull
+    @Override
+    public FenceState extractState(@NonNull Intent intent) {
+        if (!intent.hasExtra(EXTRA_KEY)) {
+            return super.extractState(intent);
+        }
+
+        return new FakeFenceState(intent.getStringExtra(EXTRA_KEY),
+                intent.getIntExtra(EXTRA_CURRENT_STATE, FenceState.UNKNOWN),
+                intent.getIntExtra(EXTRA_PREVIOUS_STATE, FenceState.UNKNOWN),
+                intent.getLongExtra(EXTRA_TIME, 0));
+    }
+
+    /**
+     * Changes the state of the fence registered with the given key and delivers it.
+     *
+     * @param key   key of the fence
+     * @param state new state of the fence
+     */
+    public void setState(@NonNull String key, boolean state) {
+        Delivery delivery;
+        synchronized (this) {
+            Registration registration = registrations.get(key);
+            if (registration == null) {
+                throw new IllegalArgumentException("no fence registered with key " + key);
+            }
+            delivery = registration.transition(key, toFenceState(state), now());
+        }
+
+        deliver(Collections.singletonList(delivery));
+    }
+
+    /**
+     * Changes the state of all registrations of the given fence instance and delivers it. Fences
+     * registered later on start in this state, until the last registration of the instance is
+     * removed. This is the way to drive {@link com.ivianuu.rxawarenessfence.ObservableFence}s,
+     * whose keys are generated.
+     *
+     * @param fence the fence instance
+     * @param state new state of the fence
+     */
+    public void setState(@NonNull AwarenessFence fence, boolean state) {
+        List<Delivery> deliveries = new ArrayList<>();
+        synchronized (this) {
+            fenceStates.put(fence, toFenceState(state));
+            for (Map.Entry<String, Registration> entry : registrations.entrySet()) {
+                if (entry.getValue().fence == fence) {
+                    deliveries.add(entry.getValue().transition(entry.getKey(), toFenceState(state), now()));
+                }
+            }
+        }
+
+        deliver(deliveries);
+    }
+
+    /**
+     * Scripts a state change of the fence registered with the given key.
+     *
+     * @param key   key of the fence
+     * @param state new state of the fence
+     * @param delay delay until the change
+     * @param unit  unit of the delay
+     * @return Disposable to cancel the change
+     */
+    @NonNull
+    public Disposable scheduleState(@NonNull final String key, final boolean state, long delay, @NonNull TimeUnit unit) {
+        return scheduler.scheduleDirect(() -> setState(key, state), delay, unit);
+    }
+
+    /**
+     * Scripts a state change of all registrations of the given fence instance.
+     *
+     * @param fence the fence instance
+     * @param state new state of the fence
+     * @param delay delay until the change
+     * @param unit  unit of the delay
+     * @return Disposable to cancel the change
+     */
+    @NonNull
+    public Disposable scheduleState(@NonNull final AwarenessFence fence, final boolean state, long delay, @NonNull TimeUnit unit) {
+        return scheduler.scheduleDirect(() -> setState(fence, state), delay, unit);
+    }
+
+    /**
+     * @return the keys of all registered fences
+     */
+    @NonNull
+    public synchronized Set<String> getRegisteredKeys() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(registrations.keySet()));
+    }
+
+    /**
+     * @param action  applies the request
+     * @param failure result of a failed request or {@code null} to fail with an error
+     */
+    private <T> Single<T> respond(final Callable<T> action, @Nullable final T failure) {
+        return Single.defer(() -> {
+            final long latencyNanos;
+            final boolean failed;
+            synchronized (random) {
+                latencyNanos = latency.nextNanos(random);
+                failed = random.nextDouble() < errorRate;
+            }
+
+            return Single.timer(latencyNanos, TimeUnit.NANOSECONDS, scheduler)
+                    .map(ignored -> {
+                        if (failed) {
+                            if (failure == null) {
+                                throw new ClientException("Fake fence request failed");
+                            }
+                            return failure;
+                        }
+                        return action.call();
+                    });
+        });
+    }
+
+    /**
+     * Forgets the state set for the fence of a removed registration once no registration of the
+     * fence instance is left.
+     */
+    private void release(@Nullable Registration removed) {
+        if (removed == null) {
+            return;
+        }
+
+        for (Registration registration : registrations.values()) {
+            if (registration.fence == removed.fence) {
+                return;
+            }
+        }
+        fenceStates.remove(removed.fence);
+    }
+
+    private void deliver(List<Delivery> deliveries) {
+        for (Delivery delivery : deliveries) {
+            FenceState state = new FakeFenceState(delivery.key, delivery.state,
+                    delivery.previousState, delivery.timeMillis);
+            if (dispatchState(context, state, delivery.data, receiver)) {
+                continue;
+            }
+
+            Intent fillIn = new Intent()
+                    .putExtra(EXTRA_KEY, delivery.key)
+                    .putExtra(EXTRA_CURRENT_STATE, delivery.state)
+                    .putExtra(EXTRA_PREVIOUS_STATE, delivery.previousState)
+                    .putExtra(EXTRA_TIME, delivery.timeMillis);
+            try {
+                delivery.pendingIntent.send(context, 0, fillIn);
+            } catch (PendingIntent.CanceledException e) {
+                Log.e("ReactiveAwareness", "Error while delivering fake fence state", e);
+            }
+        }
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    private static int toFenceState(boolean state) {
+        return state ? FenceState.TRUE : FenceState.FALSE;
+    }
+
+    private static final class Registration {
+        final AwarenessFence fence;
+        final PendingIntent pendingIntent;
+        @Nullable final Bundle data;
+        int state = FenceState.UNKNOWN;
+        int previousState = FenceState.UNKNOWN;
+        long timeMillis;
+
+        Registration(AwarenessFence fence, PendingIntent pendingIntent, @Nullable Bundle data) {
+            this.fence = fence;
+            this.pendingIntent = pendingIntent;
+            this.data = data;
+        }
+
+        Delivery transition(String key, int newState, long nowMillis) {
+            previousState = state;
+            state = newState;
+            timeMillis = nowMillis;
+            return new Delivery(key, pendingIntent, data, state, previousState, timeMillis);
+        }
+    }
+
+    private static final class Delivery {
+        final String key;
+        final PendingIntent pendingIntent;
+        @Nullable final Bundle data;
+        final int state;
+        final int previousState;
+        final long timeMillis;
+
+        Delivery(String key, PendingIntent pendingIntent, @Nullable Bundle data, int state, int previousState, long timeMillis) {
+            this.key = key;
+            this.pendingIntent = pendingIntent;
+            this.data = data;
+            this.state = state;
+            this.previousState = previousState;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    private static final class FakeFenceState extends FenceState {
+        private final String key;
+        private final int currentState;
+        private final int previousState;
+        private final long timeMillis;
+
+        FakeFenceState(String key, int currentState, int previousState, long timeMillis) {
+            this.key = key;
+            this.currentState = currentState;
+            this.previousState = previousState;
+            this.timeMillis = timeMillis;
+        }
+
+        @Override
+        public int getCurrentState() {
+            return currentState;
+        }
+
+        @Override
+        public int getPreviousState() {
+            return previousState;
+        }
+
+        @Override
+        public long getLastFenceUpdateTimeMillis() {
+            return timeMillis;
+        }
+
+        @Override
+        public String getFenceKey() {
+            return key;
+        }
+    }
+
+    private static final class FakeFenceStateMap extends FenceStateMap {
+        private final Map<String, FenceState> states;
+
+        FakeFenceStateMap(Map<String, FenceState> states) {
+            this.states = states;
+        }
+
+        @Override
+        public Set<String> getFenceKeys() {
+            return states.keySet();
+        }
+
+        @Override
+        public FenceState getFenceState(String key) {
+            return states.get(key);
+        }
+    }
+
+    /**
+     * Builder for {@link FakeFenceBackend}s. By default requests finish right away on the
+     * computation scheduler and never fail.
+     */
+    public static final class Builder {
+
+        private final Context context;
+        @Nullable private FenceReceiver receiver;
+        private Scheduler scheduler = Schedulers.computation();
+        private long seed;
+        private Latency latency = Latency.NONE;
+        private double errorRate;
+
+        /**
+         * @param context context to deliver the fence states with
+         */
+        public Builder(@NonNull Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        /**
+         * @param receiver receiver to deliver the states of background fences to in-process
+         * @return this builder
+         */
+        @NonNull
+        public Builder receiver(@NonNull FenceReceiver receiver) {
+            this.receiver = receiver;
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler to time the latencies and scripted state changes on
+         * @return this builder
+         */
+        @NonNull
+        public Builder scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * @param seed seed of the random latencies and errors
+         * @return this builder
+         */
+        @NonNull
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param latency latency of the requests
+         * @return this builder
+         */
+        @NonNull
+        public Builder latency(@NonNull Latency latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param errorRate share of failing requests between 0 and 1
+         * @return this builder
+         */
+        @NonNull
+        public Builder errorRate(double errorRate) {
+            if (errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException("error rate must be between 0 and 1");
+            }
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @return a new {@link FakeFenceBackend} with the configuration of this builder
+         */
+        @NonNull
+        public FakeFenceBackend build() {
+            return new FakeFenceBackend(this);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenesstesting;
+
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.awareness.state.Weather;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.places.PlaceLikelihood;
+import com.ivianuu.rxawareness.AwarenessMetrics;
+import com.ivianuu.rxawareness.SnapshotBackend;
+import com.ivianuu.rxawareness.SnapshotType;
+import com.ivianuu.rxplayservices.ClientException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Deterministic in-memory {@link SnapshotBackend}.
+ * <p>
+ * Every request emits the value last set for its type after a latency drawn from the configured
+ * {@link Latency} and fails with the configured error rate. All randomness comes from one seeded
+ * {@link Random} and all latencies are timed on the configured {@link Scheduler}, so a run with a
+ * {@link io.reactivex.schedulers.TestScheduler} and the same seed always behaves the same.
+ * <p>
+ * Use it through {@link com.ivianuu.rxawareness.RxSnapshot.Builder#backend(SnapshotBackend)}.
+ */
+public final class FakeSnapshotBackend extends SnapshotBackend {
+
+    private final Scheduler scheduler;
+    private final Random random;
+    private final Map<SnapshotType, Latency> latencies;
+    private final Map<SnapshotType, Double> errorRates;
+    private final AwarenessMetrics metrics;
+    private final AtomicLongArray requestCounts = new AtomicLongArray(SnapshotType.values().length);
+
+    private volatile Weather weather;
+    private volatile Location location;
+    private volatile ActivityRecognitionResult activity;
+    private volatile boolean headphonesPluggedIn;
+    private volatile List<PlaceLikelihood> nearbyPlaces = Collections.emptyList();
+    private volatile List<BeaconState.BeaconInfo> beacons = Collections.emptyList();
+
+    private FakeSnapshotBackend(Builder builder) {
+        this.scheduler = builder.scheduler;
+        this.random = new Random(builder.seed);
+        this.latencies = new EnumMap<>(builder.latencies);
+        this.errorRates = new EnumMap<>(builder.errorRates);
+        this.metrics = builder.metrics;
+    }
+
+    /**
+     * @param weather weather to emit, requests fail while it is {@code null}
+     */
+    public void setWeather(@Nullable Weather weather) {
+        this.weather = weather;
+    }
+
+    /**
+     * @param location location to emit, requests fail while it is {@code null}
+     */
+    public void setLocation(@Nullable Location location) {
+        this.location = location;
+    }
+
+    /**
+     * @param activity activity to emit, requests fail while it is {@code null}
+     */
+    public void setActivity(@Nullable ActivityRecognitionResult activity) {
+        this.activity = activity;
+    }
+
+    /**
+     * @param headphonesPluggedIn headphone state to emit
+     */
+    public void setHeadphonesPluggedIn(boolean headphonesPluggedIn) {
+        this.headphonesPluggedIn = headphonesPluggedIn;
+    }
+
+    /**
+     * @param nearbyPlaces places to emit
+     */
+    public void setNearbyPlaces(@NonNull List<PlaceLikelihood> nearbyPlaces) {
+        this.nearbyPlaces = nearbyPlaces;
+    }
+
+    /**
+     * @param beacons beacons to emit regardless of the requested type filters
+     */
+    public void setBeacons(@NonNull List<BeaconState.BeaconInfo> beacons) {
+        this.beacons = beacons;
+    }
+
+    /**
+     * @param type type of the requests
+     * @return the number of requests of the given type so far
+     */
+    public long getRequestCount(@NonNull SnapshotType type) {
+        return requestCounts.get(type.ordinal());
+    }
+
+    @NonNull
+    @Override
+    public Single<Weather> getWeather() {
+        return respond(SnapshotType.WEATHER, () -> weather);
+    }
+
+    @NonNull
+    @Override
+    public Single<Location> getLocation() {
+        return respond(SnapshotType.LOCATION, () -> location);
+    }
+
+    @NonNull
+    @Override
+    public Single<ActivityRecognitionResult> getActivity() {
+        return respond(SnapshotType.ACTIVITY, () -> activity);
+    }
+
+    @NonNull
+    @Override
+    public Single<Boolean> headphonesPluggedIn() {
+        return respond(SnapshotType.HEADPHONES, () -> headphonesPluggedIn);
+    }
+
+    @NonNull
+    @Override
+    public Single<List<PlaceLikelihood>> getNearbyPlaces() {
+        return respond(SnapshotType.PLACES, () -> nearbyPlaces);
+    }
+
+    @NonNull
+    @Override
+    public Single<List<BeaconState.BeaconInfo>> getBeacons(@NonNull Collection<BeaconState.TypeFilter> typeFilters) {
+        return respond(SnapshotType.BEACONS, () -> beacons);
+    }
+
+    private <T> Single<T> respond(final SnapshotType type, final Callable<T> value) {
+        return Single.defer(() -> {
+            final long latencyNanos;
+            final boolean failed;
+            synchronized (random) {
+                latencyNanos = latency(type).nextNanos(random);
+                failed = random.nextDouble() < errorRate(type);
+            }
+            requestCounts.incrementAndGet(type.ordinal());
+
+            final long requestStartNanos = scheduler.now(TimeUnit.NANOSECONDS);
+            return Single.timer(latencyNanos, TimeUnit.NANOSECONDS, scheduler)
+                    .map(ignored -> {
+                        metrics.onRequestFinished(type.name(),
+                                failed ? CommonStatusCodes.ERROR : CommonStatusCodes.SUCCESS,
+                                scheduler.now(TimeUnit.NANOSECONDS) - requestStartNanos, 0);
+
+                        if (failed) {
+                            throw new ClientException("Awareness request failed. Fake " + type.name() + " error");
+                        }
+
+                        T result = value.call();
+                        if (result == null) {
+                            throw new IllegalStateException("No fake value set for " + type.name());
+                        }
+                        return result;
+                    });
+        });
+    }
+
+    private Latency latency(SnapshotType type) {
+        Latency latency = latencies.get(type);
+        return latency != null ? latency : Latency.NONE;
+    }
+
+    private double errorRate(SnapshotType type) {
+        Double errorRate = errorRates.get(type);
+        return errorRate != null ? errorRate : 0;
+    }
+
+    /**
+     * Builder for {@link FakeSnapshotBackend}s. By default requests finish right away on the
+     * computation scheduler and never fail.
+     */
+    public static final class Builder {
+
+        private final Map<SnapshotType, Latency> latencies = new EnumMap<>(SnapshotType.class);
+        private final Map<SnapshotType, Double> errorRates = new EnumMap<>(SnapshotType.class);
+        private Scheduler scheduler = Schedulers.computation();
+        private long seed;
+        private AwarenessMetrics metrics = AwarenessMetrics.NONE;
+
+        /**
+         * @param scheduler scheduler to time the latencies on
+         * @return this builder
+         */
+        @NonNull
+        public Builder scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * @param seed seed of the random latencies and errors
+         * @return this builder
+         */
+        @NonNull
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param latency latency of the requests of all types
+         * @return this builder
+         */
+        @NonNull
+        public Builder latency(@NonNull Latency latency) {
+            for (SnapshotType type : SnapshotType.values()) {
+                latencies.put(type, latency);
+            }
+            return this;
+        }
+
+        /**
+         * @param type    type of the requests
+         * @param latency latency of the requests of the given type
+         * @return this builder
+         */
+        @NonNull
+        public Builder latency(@NonNull SnapshotType type, @NonNull Latency latency) {
+            latencies.put(type, latency);
+            return this;
+        }
+
+        /**
+         * @param errorRate share of failing requests of all types between 0 and 1
+         * @return this builder
+         */
+        @NonNull
+        public Builder errorRate(double errorRate) {
+            for (SnapshotType type : SnapshotType.values()) {
+                errorRate(type, errorRate);
+            }
+            return this;
+        }
+
+        /**
+         * @param type      type of the requests
+         * @param errorRate share of failing requests of the given type between 0 and 1
+         * @return this builder
+         */
+        @NonNull
+        public Builder errorRate(@NonNull SnapshotType type, double errorRate) {
+            if (errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException("error rate must be between 0 and 1");
+            }
+            errorRates.put(type, errorRate);
+            return this;
+        }
+
+        /**
+         * @param metrics metrics the fake requests report their timings to
+         * @return this builder
+         */
+        @NonNull
+        public Builder metrics(@NonNull AwarenessMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @return a new {@link FakeSnapshotBackend} with the configuration of this builder
+         */
+        @NonNull
+        public FakeSnapshotBackend build() {
+            return new FakeSnapshotBackend(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawarenesstesting;
+
+import android.support.annotation.NonNull;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the latencies of fake requests.
+ */
+public abstract class Latency {
+
+    /**
+     * Requests finish right away
+     */
+    public static final Latency NONE = fixed(0, TimeUnit.NANOSECONDS);
+
+    /**
+     * @param random random to draw from
+     * @return the latency of the next request in nanoseconds
+     */
+    public abstract long nextNanos(@NonNull Random random);
+
+    /**
+     * @param time latency of every request
+     * @param unit unit of the latency
+     * @return a distribution which always returns the given latency
+     */
+    @NonNull
+    public static Latency fixed(long time, @NonNull TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("time must not be negative");
+        }
+        final long nanos = unit.toNanos(time);
+        return new Latency() {
+            @Override
+            public long nextNanos(@NonNull Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * @param min  min latency
+     * @param max  max latency
+     * @param unit unit of the latencies
+     * @return a distribution of latencies spread evenly between min and max
+     */
+    @NonNull
+    public static Latency uniform(long min, long max, @NonNull TimeUnit unit) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("min must not be negative and not greater than max");
+        }
+        final long minNanos = unit.toNanos(min);
+        final long rangeNanos = unit.toNanos(max) - minNanos;
+        return new Latency() {
+            @Override
+            public long nextNanos(@NonNull Random random) {
+                return minNanos + (long) (random.nextDouble() * rangeNanos);
+            }
+        };
+    }
+
+    /**
+     * Log-normal distribution, which resembles the long tail of real network requests.
+     *
+     * @param median median latency
+     * @param unit   unit of the median
+     * @param sigma  spread of the distribution, e.g. {@code 0.5} puts p99 at about 3.2x the median
+     * @return a log-normal distribution of latencies
+     */
+    @NonNull
+    public static Latency logNormal(long median, @NonNull TimeUnit unit, final double sigma) {
+        if (median < 0 || sigma < 0) {
+            throw new IllegalArgumentException("median and sigma must not be negative");
+        }
+        final long medianNanos = unit.toNanos(median);
+        return new Latency() {
+            @Override
+            public long nextNanos(@NonNull Random random) {
+                return (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+            }
+        };
+    }
+}
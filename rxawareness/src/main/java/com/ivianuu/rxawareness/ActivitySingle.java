@@ -16,7 +16,6 @@
 
 package com.ivianuu.rxawareness;
 
-import android.content.Context;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
 import android.support.annotation.RequiresPermission;
@@ -34,14 +33,14 @@ import io.reactivex.Single;
  */
 class ActivitySingle extends BaseAwarenessSingle<ActivityRecognitionResult, DetectedActivityResult> {
 
-    private ActivitySingle(Context context) {
-        super(context);
+    ActivitySingle(AwarenessClientPool clientPool) {
+        super(clientPool, SnapshotType.ACTIVITY);
     }
 
     @RequiresPermission("com.google.android.gms.permission.ACTIVITY_RECOGNITION")
     @CheckResult @NonNull
-    static Single<ActivityRecognitionResult> create(@NonNull Context context) {
-        return Single.create(new ActivitySingle(context));
+    static Single<ActivityRecognitionResult> create(@NonNull AwarenessClientPool clientPool) {
+        return Single.create(new ActivitySingle(clientPool));
     }
 
     @Override
@@ -51,7 +50,7 @@ class ActivitySingle extends BaseAwarenessSingle<ActivityRecognitionResult, Dete
 
     @Override
     @RequiresPermission("com.google.android.gms.permission.ACTIVITY_RECOGNITION")
-    protected PendingResult<? super DetectedActivityResult> createRequest(GoogleApiClient googleApiClient) {
+    protected PendingResult<DetectedActivityResult> createRequest(GoogleApiClient googleApiClient) {
         return Awareness.SnapshotApi.getDetectedActivity(googleApiClient);
     }
 }
\ No newline at end of file
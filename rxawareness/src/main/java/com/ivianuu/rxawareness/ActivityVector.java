@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.DetectedActivity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable vector of the confidences of an {@link ActivityRecognitionResult} indexed by
+ * {@link DetectedActivity} type.
+ * <p>
+ * Lookups don't allocate. Filtering by a minimum confidence returns a bitmask of the matching
+ * types where bit {@code n} is set for type {@code n}, use {@link #hasType(int, int)} to test it.
+ */
+public final class ActivityVector {
+
+    /**
+     * Highest activity type that can be represented.
+     */
+    public static final int MAX_TYPE = Integer.SIZE - 1;
+
+    private final int[] confidences;
+    private final int mostProbableType;
+    private final long time;
+
+    private ActivityVector(int[] confidences, int mostProbableType, long time) {
+        this.confidences = confidences;
+        this.mostProbableType = mostProbableType;
+        this.time = time;
+    }
+
+    /**
+     * Creates a vector of the confidences of the given result.
+     *
+     * @param result result to take the confidences from
+     * @return vector of the confidences
+     */
+    @NonNull
+    public static ActivityVector from(@NonNull ActivityRecognitionResult result) {
+        List<DetectedActivity> activities = result.getProbableActivities();
+
+        int size = 0;
+        for (int i = 0; i < activities.size(); i++) {
+            int type = activities.get(i).getType();
+            if (type >= 0 && type <= MAX_TYPE) {
+                size = Math.max(size, type + 1);
+            }
+        }
+
+        int[] confidences = new int[size];
+        int mostProbableType = DetectedActivity.UNKNOWN;
+        int mostProbableConfidence = -1;
+
+        for (int i = 0; i < activities.size(); i++) {
+            DetectedActivity activity = activities.get(i);
+            int type = activity.getType();
+            if (type < 0 || type > MAX_TYPE) {
+                continue;
+            }
+
+            int confidence = activity.getConfidence();
+            confidences[type] = confidence;
+            if (confidence > mostProbableConfidence) {
+                mostProbableConfidence = confidence;
+                mostProbableType = type;
+            }
+        }
+
+        return new ActivityVector(confidences, mostProbableType, result.getTime());
+    }
+
+    /**
+     * Checks whether the given type is contained in a bitmask of {@link #typesWithConfidence(int)}.
+     *
+     * @param typeMask bitmask of types
+     * @param type     type to check
+     * @return {@code true} if the type is contained
+     */
+    public static boolean hasType(int typeMask, int type) {
+        return type >= 0 && type <= MAX_TYPE && (typeMask & (1 << type)) != 0;
+    }
+
+    /**
+     * @param type type like {@link DetectedActivity#WALKING}
+     * @return the confidence of the given type between 0 and 100, {@code 0} if it was not detected
+     */
+    public int getConfidence(int type) {
+        return type >= 0 && type < confidences.length ? confidences[type] : 0;
+    }
+
+    /**
+     * @return the type with the highest confidence or {@link DetectedActivity#UNKNOWN} if no
+     * activity was detected
+     */
+    public int getMostProbableType() {
+        return mostProbableType;
+    }
+
+    /**
+     * @return the confidence of {@link #getMostProbableType()}
+     */
+    public int getMostProbableConfidence() {
+        return getConfidence(mostProbableType);
+    }
+
+    /**
+     * Filters the types by their confidence.
+     *
+     * @param minimumConfidence minimum confidence of the types
+     * @return bitmask of all types which have at least the given confidence
+     */
+    public int typesWithConfidence(int minimumConfidence) {
+        int mask = 0;
+        for (int type = 0; type < confidences.length; type++) {
+            if (confidences[type] > 0 && confidences[type] >= minimumConfidence) {
+                mask |= 1 << type;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return the time of the underlying result in milliseconds since epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ActivityVector)) return false;
+        ActivityVector that = (ActivityVector) o;
+        return time == that.time
+                && mostProbableType == that.mostProbableType
+                && Arrays.equals(confidences, that.confidences);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(confidences);
+        result = 31 * result + mostProbableType;
+        result = 31 * result + (int) (time ^ (time >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ActivityVector{confidences=" + Arrays.toString(confidences)
+                + ", mostProbableType=" + mostProbableType + ", time=" + time + "}";
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.Awareness;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.ResultCallback;
+import com.ivianuu.rxplayservices.ClientException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Ref-counted holder of a single {@link GoogleApiClient} for the Awareness API.
+ * <p>
+ * The client is connected on the first {@link #acquire(ClientCallback)} and stays connected while
+ * any {@link Lease} is held. Once the last lease is released, the client is kept alive for the
+ * linger period so that follow-up requests can reuse the connection.
+ * <p>
+ * Results are delivered on the looper of the client, which is the main looper unless a callback
+ * looper was given. With a callback scheduler the client runs on a background thread of the pool
+ * instead, which hands every result over to the scheduler without blocking any of its threads.
+ */
+class AwarenessClientPool implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener {
+
+    static final long DEFAULT_LINGER_MILLIS = 5000;
+
+    private final Context context;
+    private final long lingerMillis;
+    private final AwarenessMetrics metrics;
+    @Nullable private final Looper callbackLooper;
+    @Nullable private final Scheduler callbackScheduler;
+    private final List<Lease> pendingLeases = new ArrayList<>();
+
+    private GoogleApiClient client;
+    @Nullable private HandlerThread callbackThread;
+    private int refCount;
+    private long connectStartNanos;
+    @Nullable private Disposable lingerDisposable;
+
+    AwarenessClientPool(@NonNull Context context, long lingerMillis, @NonNull AwarenessMetrics metrics,
+                        @Nullable Looper callbackLooper, @Nullable Scheduler callbackScheduler) {
+        this.context = context;
+        this.lingerMillis = lingerMillis;
+        this.metrics = metrics;
+        this.callbackLooper = callbackLooper;
+        this.callbackScheduler = callbackScheduler;
+    }
+
+    /**
+     * @return the metrics requests on the shared client report to
+     */
+    @NonNull
+    AwarenessMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Delivers the result of a request issued on the shared client to the given callback. The
+     * callback is invoked on the callback scheduler if one was given, otherwise on the looper of
+     * the client.
+     * <p>
+     * Results of requests canceled while the result is handed over to a callback scheduler may
+     * still be delivered, callbacks have to ignore them.
+     *
+     * @param pendingResult pending result of the request
+     * @param callback      callback to deliver the result to
+     */
+    <R extends Result> void setResultCallback(@NonNull final PendingResult<R> pendingResult,
+                                              @NonNull final ResultCallback<? super R> callback) {
+        if (callbackScheduler == null) {
+            pendingResult.setResultCallback(callback);
+            return;
+        }
+
+        // the result arrives on the callback thread of the client, which only hands it over
+        pendingResult.setResultCallback((R result) -> callbackScheduler.scheduleDirect(() -> callback.onResult(result)));
+    }
+
+    /**
+     * Acquires the shared client. The callback is invoked once the client is connected, which may
+     * be immediately if it already is.
+     * <p>
+     * The returned lease has to be released once the client is not needed anymore.
+     *
+     * @param callback callback to notify once the client is connected
+     * @return lease on the shared client
+     */
+    @NonNull
+    Lease acquire(@NonNull ClientCallback callback) {
+        Lease lease = new Lease(callback);
+        GoogleApiClient connectedClient = null;
+
+        synchronized (this) {
+            refCount++;
+            cancelLinger();
+
+            if (client == null) {
+                GoogleApiClient.Builder builder = new GoogleApiClient.Builder(context)
+                        .addApi(Awareness.API)
+                        .addConnectionCallbacks(this)
+                        .addOnConnectionFailedListener(this);
+                if (callbackLooper != null) {
+                    builder.setHandler(new Handler(callbackLooper));
+                } else if (callbackScheduler != null) {
+                    callbackThread = new HandlerThread("RxAwareness-Callbacks");
+                    callbackThread.start();
+                    builder.setHandler(new Handler(callbackThread.getLooper()));
+                }
+                client = builder.build();
+            }
+
+            if (client.isConnected()) {
+                connectedClient = client;
+            } else {
+                pendingLeases.add(lease);
+                if (!client.isConnecting()) {
+                    connectStartNanos = System.nanoTime();
+                    client.connect();
+                }
+            }
+        }
+
+        if (connectedClient != null) {
+            callback.onClientConnected(connectedClient);
+        }
+
+        return lease;
+    }
+
+    @Override
+    public void onConnected(@Nullable Bundle bundle) {
+        GoogleApiClient connectedClient;
+        List<Lease> leases;
+
+        synchronized (this) {
+            if (connectStartNanos != 0) {
+                metrics.onClientConnected(System.nanoTime() - connectStartNanos);
+                connectStartNanos = 0;
+            }
+            connectedClient = client;
+            leases = new ArrayList<>(pendingLeases);
+            pendingLeases.clear();
+        }
+
+        for (Lease lease : leases) {
+            lease.callback.onClientConnected(connectedClient);
+        }
+    }
+
+    @Override
+    public synchronized void onConnectionSuspended(int cause) {
+        // the client reconnects on its own, pending leases will be served in onConnected
+        connectStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+        List<Lease> leases;
+
+        synchronized (this) {
+            metrics.onClientConnectionFailed(connectionResult.getErrorCode(), System.nanoTime() - connectStartNanos);
+            connectStartNanos = 0;
+            leases = new ArrayList<>(pendingLeases);
+            pendingLeases.clear();
+            client = null;
+            quitCallbackThread();
+        }
+
+        ClientException exception = new ClientException(
+                "Unable to connect GoogleApiClient. " + connectionResult.getErrorMessage());
+        for (Lease lease : leases) {
+            lease.callback.onClientError(exception);
+        }
+    }
+
+    private synchronized void release(Lease lease) {
+        pendingLeases.remove(lease);
+        refCount--;
+
+        if (refCount > 0) {
+            return;
+        }
+
+        if (lingerMillis <= 0) {
+            disconnectIfIdle();
+        } else {
+            lingerDisposable = Schedulers.computation()
+                    .scheduleDirect(this::disconnectIfIdle, lingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void disconnectIfIdle() {
+        if (refCount > 0 || client == null) {
+            return;
+        }
+
+        if (client.isConnected() || client.isConnecting()) {
+            client.disconnect();
+        }
+        client = null;
+        quitCallbackThread();
+    }
+
+    private void quitCallbackThread() {
+        if (callbackThread != null) {
+            callbackThread.quit();
+            callbackThread = null;
+        }
+    }
+
+    private void cancelLinger() {
+        if (lingerDisposable != null) {
+            lingerDisposable.dispose();
+            lingerDisposable = null;
+        }
+    }
+
+    /**
+     * Callback for {@link #acquire(ClientCallback)}
+     */
+    interface ClientCallback {
+
+        void onClientConnected(@NonNull GoogleApiClient googleApiClient);
+
+        void onClientError(@NonNull Throwable throwable);
+    }
+
+    /**
+     * A single reference to the shared client. Releasing a lease more than once has no effect.
+     */
+    final class Lease {
+
+        private final ClientCallback callback;
+        private boolean released;
+
+        Lease(ClientCallback callback) {
+            this.callback = callback;
+        }
+
+        void release() {
+            synchronized (AwarenessClientPool.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            AwarenessClientPool.this.release(this);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives timings and results of the calls to the Awareness API.
+ * <p>
+ * Implementations are called from arbitrary threads, often the main thread, and should return
+ * quickly. {@link LatencyHistogramMetrics} is a ready to use implementation.
+ */
+public interface AwarenessMetrics {
+
+    /**
+     * Hedge outcome of a request which finished before the second request issued for it.
+     */
+    int HEDGE_PRIMARY_WON = 0;
+
+    /**
+     * Hedge outcome of a request whose second request finished first.
+     */
+    int HEDGE_SECONDARY_WON = 1;
+
+    /**
+     * Hedge outcome of a request which was answered with the last value of a previous request.
+     */
+    int HEDGE_FALLBACK = 2;
+
+    /**
+     * Metrics implementation which ignores all events.
+     */
+    AwarenessMetrics NONE = new AwarenessMetrics() {
+        @Override
+        public void onClientConnected(long connectNanos) {
+        }
+
+        @Override
+        public void onClientConnectionFailed(int errorCode, long connectNanos) {
+        }
+
+        @Override
+        public void onRequestFinished(@NonNull String operation, int statusCode, long requestNanos, long unwrapNanos) {
+        }
+
+        @Override
+        public void onRequestTimedOut(@NonNull String operation, long timeoutNanos) {
+        }
+
+        @Override
+        public void onRequestHedged(@NonNull String operation, int outcome) {
+        }
+    };
+
+    /**
+     * Called once a GoogleApiClient connected.
+     *
+     * @param connectNanos time the connection took in nanoseconds
+     */
+    void onClientConnected(long connectNanos);
+
+    /**
+     * Called once a GoogleApiClient failed to connect.
+     *
+     * @param errorCode    error code of the {@link com.google.android.gms.common.ConnectionResult}
+     * @param connectNanos time until the connection failed in nanoseconds
+     */
+    void onClientConnectionFailed(int errorCode, long connectNanos);
+
+    /**
+     * Called once a request finished.
+     *
+     * @param operation    name of the operation like {@code "WEATHER"}
+     * @param statusCode   status code of the result, see
+     *                     {@link com.google.android.gms.common.api.CommonStatusCodes}
+     * @param requestNanos time from issuing the request until its result arrived in nanoseconds
+     * @param unwrapNanos  time it took to unwrap the result in nanoseconds, {@code 0} for failed
+     *                     requests
+     */
+    void onRequestFinished(@NonNull String operation, int statusCode, long requestNanos, long unwrapNanos);
+
+    /**
+     * Called once a request did not finish within its timeout.
+     *
+     * @param operation    name of the operation like {@code "WEATHER"}
+     * @param timeoutNanos timeout of the request in nanoseconds
+     */
+    void onRequestTimedOut(@NonNull String operation, long timeoutNanos);
+
+    /**
+     * Called once a hedged request finished, see {@link HedgePolicy}.
+     *
+     * @param operation name of the operation like {@code "WEATHER"}
+     * @param outcome   one of {@link #HEDGE_PRIMARY_WON}, {@link #HEDGE_SECONDARY_WON} and
+     *                  {@link #HEDGE_FALLBACK}
+     */
+    void onRequestHedged(@NonNull String operation, int outcome);
+}
@@ -16,19 +16,139 @@
 
 package com.ivianuu.rxawareness;
 
-import android.content.Context;
 import android.support.annotation.NonNull;
 
-import com.google.android.gms.awareness.Awareness;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.Result;
-import com.ivianuu.rxplayservices.GoogleApiClientRequestSingle;
+import com.ivianuu.rxplayservices.ClientException;
+
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.functions.Cancellable;
 
 /**
  * Base Single for Awareness Requests in a GoogleApiClient
+ * <p>
+ * The client is taken from the {@link AwarenessClientPool} of the owning {@link RxSnapshot} and
+ * released again once the request finished or the subscriber disposed.
  */
-abstract class BaseAwarenessSingle<T, R extends Result> extends GoogleApiClientRequestSingle<T, R> {
+abstract class BaseAwarenessSingle<T, R extends Result> implements SingleOnSubscribe<T> {
+
+    private final AwarenessClientPool clientPool;
+    private final SnapshotType type;
+
+    BaseAwarenessSingle(@NonNull AwarenessClientPool clientPool, @NonNull SnapshotType type) {
+        this.clientPool = clientPool;
+        this.type = type;
+    }
+
+    /**
+     * @return the type of context information this Single provides
+     */
+    @NonNull
+    SnapshotType type() {
+        return type;
+    }
+
+    @Override
+    public void subscribe(SingleEmitter<T> emitter) throws Exception {
+        Request request = new Request(emitter);
+        emitter.setCancellable(request);
+        request.setLease(clientPool.acquire(request));
+    }
+
+    /**
+     * Unwraps the result of the request to the emitted value.
+     *
+     * @param result successful result of the request
+     * @return value to emit
+     */
+    protected abstract T unwrap(R result);
+
+    /**
+     * Creates the Awareness request on the connected client.
+     *
+     * @param googleApiClient connected client to use
+     * @return pending result of the request
+     */
+    protected abstract PendingResult<R> createRequest(GoogleApiClient googleApiClient);
+
+    /**
+     * A single subscription to this Single. Issues the request once the shared client is connected
+     * and gives the client back once the subscription ends.
+     */
+    private final class Request implements AwarenessClientPool.ClientCallback, Cancellable {
+
+        private final SingleEmitter<T> emitter;
+        private AwarenessClientPool.Lease lease;
+        private PendingResult<R> pendingResult;
+        private boolean finished;
+
+        private Request(SingleEmitter<T> emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void setLease(AwarenessClientPool.Lease lease) {
+            if (finished) {
+                lease.release();
+            } else {
+                this.lease = lease;
+            }
+        }
+
+        @Override
+        public void onClientConnected(@NonNull GoogleApiClient googleApiClient) {
+            final long requestStartNanos = System.nanoTime();
+            PendingResult<R> request;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                request = pendingResult = createRequest(googleApiClient);
+            }
+
+            clientPool.setResultCallback(request, result -> {
+                long requestNanos = System.nanoTime() - requestStartNanos;
+                synchronized (this) {
+                    if (finished) {
+                        return;
+                    }
+                    pendingResult = null;
+                }
+
+                if (result.getStatus().isSuccess()) {
+                    long unwrapStartNanos = System.nanoTime();
+                    T value = unwrap(result);
+                    clientPool.metrics().onRequestFinished(type.name(), result.getStatus().getStatusCode(),
+                            requestNanos, System.nanoTime() - unwrapStartNanos);
+                    emitter.onSuccess(value);
+                } else {
+                    clientPool.metrics().onRequestFinished(type.name(), result.getStatus().getStatusCode(),
+                            requestNanos, 0);
+                    emitter.onError(new ClientException("Awareness request failed. " + result.getStatus().getStatusMessage()));
+                }
+            });
+        }
+
+        @Override
+        public void onClientError(@NonNull Throwable throwable) {
+            emitter.onError(throwable);
+        }
+
+        @Override
+        public synchronized void cancel() throws Exception {
+            finished = true;
+
+            if (pendingResult != null) {
+                pendingResult.cancel();
+                pendingResult = null;
+            }
 
-    BaseAwarenessSingle(@NonNull Context context) {
-        super(context, Awareness.API);
+            if (lease != null) {
+                lease.release();
+                lease = null;
+            }
+        }
     }
-}
\ No newline at end of file
+}
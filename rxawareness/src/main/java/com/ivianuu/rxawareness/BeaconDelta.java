@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.state.BeaconState;
+
+/**
+ * A change of the nearby beacons between two polls of
+ * {@link RxSnapshot#observeBeacons(java.util.Collection, long, java.util.concurrent.TimeUnit)}.
+ * <p>
+ * Beacons have no identity apart from their attachment, so a changed attachment is reported as
+ * the old attachment exiting and the new one entering.
+ */
+public final class BeaconDelta {
+
+    /**
+     * Kind of a {@link BeaconDelta}
+     */
+    public enum Type {
+        /**
+         * The beacon was not nearby before and is now.
+         */
+        ENTERED,
+        /**
+         * The beacon was nearby before and is not anymore.
+         */
+        EXITED
+    }
+
+    private final Type type;
+    private final BeaconState.BeaconInfo beacon;
+
+    BeaconDelta(@NonNull Type type, @NonNull BeaconState.BeaconInfo beacon) {
+        this.type = type;
+        this.beacon = beacon;
+    }
+
+    /**
+     * @return the kind of this change
+     */
+    @NonNull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the beacon which entered or exited
+     */
+    @NonNull
+    public BeaconState.BeaconInfo getBeacon() {
+        return beacon;
+    }
+
+    @Override
+    public String toString() {
+        return "BeaconDelta{type=" + type + ", beacon=" + beacon + "}";
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.state.BeaconState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the {@link BeaconDelta}s between consecutive beacon lists.
+ * <p>
+ * Beacons are identified by namespace, type and content and compared through hash maps, so a diff
+ * takes linear time.
+ */
+class BeaconDiffer {
+
+    private Map<BeaconKey, BeaconState.BeaconInfo> previous = Collections.emptyMap();
+
+    /**
+     * Diffs the given beacons against the ones of the last call.
+     *
+     * @param beacons currently nearby beacons
+     * @return changes since the last call
+     */
+    @NonNull
+    synchronized List<BeaconDelta> diff(@NonNull List<BeaconState.BeaconInfo> beacons) {
+        Map<BeaconKey, BeaconState.BeaconInfo> current = new HashMap<>(beacons.size() * 2);
+        for (int i = 0; i < beacons.size(); i++) {
+            BeaconState.BeaconInfo beacon = beacons.get(i);
+            current.put(new BeaconKey(beacon), beacon);
+        }
+
+        List<BeaconDelta> deltas = new ArrayList<>();
+        for (Map.Entry<BeaconKey, BeaconState.BeaconInfo> entry : current.entrySet()) {
+            if (!previous.containsKey(entry.getKey())) {
+                deltas.add(new BeaconDelta(BeaconDelta.Type.ENTERED, entry.getValue()));
+            }
+        }
+
+        for (Map.Entry<BeaconKey, BeaconState.BeaconInfo> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                deltas.add(new BeaconDelta(BeaconDelta.Type.EXITED, entry.getValue()));
+            }
+        }
+
+        previous = current;
+        return deltas;
+    }
+
+    private static final class BeaconKey {
+
+        final String attachmentType;
+        final byte[] content;
+        final int hashCode;
+
+        BeaconKey(BeaconState.BeaconInfo beacon) {
+            this.attachmentType = beacon.getNamespace() + '/' + beacon.getType();
+            this.content = beacon.getContent();
+            this.hashCode = 31 * attachmentType.hashCode() + Arrays.hashCode(content);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BeaconKey)) return false;
+            BeaconKey that = (BeaconKey) o;
+            return hashCode == that.hashCode
+                    && attachmentType.equals(that.attachmentType)
+                    && Arrays.equals(content, that.content);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -16,7 +16,6 @@
 
 package com.ivianuu.rxawareness;
 
-import android.content.Context;
 import android.os.Build;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
@@ -43,28 +42,28 @@ class BeaconSingle extends BaseAwarenessSingle<List<BeaconState.BeaconInfo>, Bea
 
     private Collection<BeaconState.TypeFilter> typeFilters;
 
-    private BeaconSingle(Context context, BeaconState.TypeFilter... typeFilters) {
-        super(context);
+    BeaconSingle(AwarenessClientPool clientPool, BeaconState.TypeFilter... typeFilters) {
+        super(clientPool, SnapshotType.BEACONS);
         this.typeFilters = new ArrayList<>(Arrays.asList(typeFilters));
     }
 
-    private BeaconSingle(Context context, Collection<BeaconState.TypeFilter> typeFilters) {
-        super(context);
+    BeaconSingle(AwarenessClientPool clientPool, Collection<BeaconState.TypeFilter> typeFilters) {
+        super(clientPool, SnapshotType.BEACONS);
         this.typeFilters = typeFilters;
     }
 
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     @CheckResult @NonNull
-    static Single<List<BeaconState.BeaconInfo>> create(Context context, BeaconState.TypeFilter... typeFilters) {
-        return Single.create(new BeaconSingle(context, typeFilters));
+    static Single<List<BeaconState.BeaconInfo>> create(AwarenessClientPool clientPool, BeaconState.TypeFilter... typeFilters) {
+        return Single.create(new BeaconSingle(clientPool, typeFilters));
     }
 
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     @CheckResult @NonNull
-    static Single<List<BeaconState.BeaconInfo>> create(Context context, Collection<BeaconState.TypeFilter> typeFilters) {
-        return Single.create(new BeaconSingle(context, typeFilters));
+    static Single<List<BeaconState.BeaconInfo>> create(AwarenessClientPool clientPool, Collection<BeaconState.TypeFilter> typeFilters) {
+        return Single.create(new BeaconSingle(clientPool, typeFilters));
     }
 
     @Override
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.awareness.state.Weather;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.places.PlaceLikelihood;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combined result of several Snapshot API calls issued at once.
+ * <p>
+ * Every requested {@link SnapshotType} either has a value or an error. Values of types that were
+ * not requested or whose request failed are {@code null}.
+ */
+public final class ContextSnapshot {
+
+    private final EnumSet<SnapshotType> requestedTypes;
+    private final Map<SnapshotType, Throwable> errors;
+
+    @Nullable private final Weather weather;
+    @Nullable private final Location location;
+    @Nullable private final ActivityRecognitionResult activity;
+    @Nullable private final Boolean headphonesPluggedIn;
+    @Nullable private final List<PlaceLikelihood> nearbyPlaces;
+    @Nullable private final List<BeaconState.BeaconInfo> beacons;
+
+    private ContextSnapshot(Builder builder) {
+        this.requestedTypes = EnumSet.copyOf(builder.requestedTypes);
+        this.errors = Collections.unmodifiableMap(new EnumMap<>(builder.errors));
+        this.weather = builder.weather;
+        this.location = builder.location;
+        this.activity = builder.activity;
+        this.headphonesPluggedIn = builder.headphonesPluggedIn;
+        this.nearbyPlaces = builder.nearbyPlaces;
+        this.beacons = builder.beacons;
+    }
+
+    /**
+     * @return the types that were requested for this snapshot
+     */
+    @NonNull
+    public EnumSet<SnapshotType> getRequestedTypes() {
+        return EnumSet.copyOf(requestedTypes);
+    }
+
+    /**
+     * @param type type to check
+     * @return {@code true} if the given type was requested and its request succeeded
+     */
+    public boolean isSuccessful(@NonNull SnapshotType type) {
+        return requestedTypes.contains(type) && !errors.containsKey(type);
+    }
+
+    /**
+     * @param type type to check
+     * @return the error of the request for the given type or {@code null} if it succeeded or was
+     * not requested
+     */
+    @Nullable
+    public Throwable getError(@NonNull SnapshotType type) {
+        return errors.get(type);
+    }
+
+    /**
+     * @return all errors of failed requests keyed by their type
+     */
+    @NonNull
+    public Map<SnapshotType, Throwable> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the weather at the devices location or {@code null}
+     */
+    @Nullable
+    public Weather getWeather() {
+        return weather;
+    }
+
+    /**
+     * @return the location of the device or {@code null}
+     */
+    @Nullable
+    public Location getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the activity of the device or {@code null}
+     */
+    @Nullable
+    public ActivityRecognitionResult getActivity() {
+        return activity;
+    }
+
+    /**
+     * @return {@code true} if the headphones are plugged in or {@code null}
+     */
+    @Nullable
+    public Boolean getHeadphonesPluggedIn() {
+        return headphonesPluggedIn;
+    }
+
+    /**
+     * @return the places nearby the device or {@code null}
+     */
+    @Nullable
+    public List<PlaceLikelihood> getNearbyPlaces() {
+        return nearbyPlaces;
+    }
+
+    /**
+     * @return the beacons nearby the device or {@code null}
+     */
+    @Nullable
+    public List<BeaconState.BeaconInfo> getBeacons() {
+        return beacons;
+    }
+
+    /**
+     * Collects the partial results while the requests of a snapshot are running.
+     */
+    static final class Builder {
+
+        private final EnumSet<SnapshotType> requestedTypes;
+        private final Map<SnapshotType, Throwable> errors = new EnumMap<>(SnapshotType.class);
+
+        private Weather weather;
+        private Location location;
+        private ActivityRecognitionResult activity;
+        private Boolean headphonesPluggedIn;
+        private List<PlaceLikelihood> nearbyPlaces;
+        private List<BeaconState.BeaconInfo> beacons;
+
+        Builder(EnumSet<SnapshotType> requestedTypes) {
+            this.requestedTypes = requestedTypes;
+        }
+
+        Builder weather(Weather weather) {
+            this.weather = weather;
+            return this;
+        }
+
+        Builder location(Location location) {
+            this.location = location;
+            return this;
+        }
+
+        Builder activity(ActivityRecognitionResult activity) {
+            this.activity = activity;
+            return this;
+        }
+
+        Builder headphonesPluggedIn(Boolean headphonesPluggedIn) {
+            this.headphonesPluggedIn = headphonesPluggedIn;
+            return this;
+        }
+
+        Builder nearbyPlaces(List<PlaceLikelihood> nearbyPlaces) {
+            this.nearbyPlaces = nearbyPlaces;
+            return this;
+        }
+
+        Builder beacons(List<BeaconState.BeaconInfo> beacons) {
+            this.beacons = beacons;
+            return this;
+        }
+
+        Builder error(SnapshotType type, Throwable error) {
+            errors.put(type, error);
+            return this;
+        }
+
+        ContextSnapshot build() {
+            return new ContextSnapshot(this);
+        }
+    }
+}
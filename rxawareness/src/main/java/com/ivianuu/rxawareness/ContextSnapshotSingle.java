@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.annotation.SuppressLint;
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.ivianuu.rxplayservices.ClientException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Provides {@link Single}s that issue several Snapshot API requests in parallel on one client
+ * and combine their results into a {@link ContextSnapshot}.
+ * <p>
+ * Failing requests don't fail the Single, their errors are reported in the snapshot instead.
+ */
+@SuppressLint("MissingPermission")
+class ContextSnapshotSingle implements SingleOnSubscribe<ContextSnapshot> {
+
+    private final AwarenessClientPool clientPool;
+    private final EnumSet<SnapshotType> types;
+    @Nullable private final Collection<BeaconState.TypeFilter> beaconFilters;
+
+    private ContextSnapshotSingle(AwarenessClientPool clientPool,
+                                  EnumSet<SnapshotType> types,
+                                  @Nullable Collection<BeaconState.TypeFilter> beaconFilters) {
+        this.clientPool = clientPool;
+        this.types = EnumSet.copyOf(types);
+        this.beaconFilters = beaconFilters;
+    }
+
+    @CheckResult @NonNull
+    static Single<ContextSnapshot> create(@NonNull AwarenessClientPool clientPool,
+                                          @NonNull EnumSet<SnapshotType> types,
+                                          @Nullable Collection<BeaconState.TypeFilter> beaconFilters) {
+        return Single.create(new ContextSnapshotSingle(clientPool, types, beaconFilters));
+    }
+
+    @Override
+    public void subscribe(SingleEmitter<ContextSnapshot> emitter) throws Exception {
+        Request request = new Request(emitter);
+        emitter.setCancellable(request);
+        request.setLease(clientPool.acquire(request));
+    }
+
+    /**
+     * A single subscription to this Single. Issues all requests once the shared client is
+     * connected and emits once every request finished.
+     */
+    private final class Request implements AwarenessClientPool.ClientCallback, Cancellable {
+
+        private final SingleEmitter<ContextSnapshot> emitter;
+        private final ContextSnapshot.Builder builder = new ContextSnapshot.Builder(types);
+        private final List<PendingResult<?>> pendingResults = new ArrayList<>();
+        private AwarenessClientPool.Lease lease;
+        private int remaining;
+        private boolean finished;
+
+        private Request(SingleEmitter<ContextSnapshot> emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void setLease(AwarenessClientPool.Lease lease) {
+            if (finished) {
+                lease.release();
+            } else {
+                this.lease = lease;
+            }
+        }
+
+        @Override
+        public void onClientConnected(@NonNull GoogleApiClient googleApiClient) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                remaining = types.size();
+            }
+
+            for (SnapshotType type : types) {
+                switch (type) {
+                    case WEATHER:
+                        issue(type, new WeatherSingle(clientPool), googleApiClient, builder::weather);
+                        break;
+                    case LOCATION:
+                        issue(type, new LocationSingle(clientPool), googleApiClient, builder::location);
+                        break;
+                    case ACTIVITY:
+                        issue(type, new ActivitySingle(clientPool), googleApiClient, builder::activity);
+                        break;
+                    case HEADPHONES:
+                        issue(type, new HeadphoneSingle(clientPool), googleApiClient, builder::headphonesPluggedIn);
+                        break;
+                    case PLACES:
+                        issue(type, new NearbySingle(clientPool), googleApiClient, builder::nearbyPlaces);
+                        break;
+                    case BEACONS:
+                        issue(type, new BeaconSingle(clientPool, beaconFilters), googleApiClient, builder::beacons);
+                        break;
+                }
+            }
+        }
+
+        private <T, R extends Result> void issue(final SnapshotType type,
+                                                 final BaseAwarenessSingle<T, R> single,
+                                                 GoogleApiClient googleApiClient,
+                                                 final Consumer<T> consumer) {
+            final long requestStartNanos = System.nanoTime();
+            final PendingResult<R> pendingResult;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                pendingResult = single.createRequest(googleApiClient);
+                pendingResults.add(pendingResult);
+            }
+
+            clientPool.setResultCallback(pendingResult, result -> {
+                synchronized (this) {
+                    if (finished) {
+                        return;
+                    }
+                    pendingResults.remove(pendingResult);
+
+                    long requestNanos = System.nanoTime() - requestStartNanos;
+
+                    if (result.getStatus().isSuccess()) {
+                        long unwrapStartNanos = System.nanoTime();
+                        try {
+                            consumer.accept(single.unwrap(result));
+                        } catch (Exception e) {
+                            builder.error(type, e);
+                        }
+                        clientPool.metrics().onRequestFinished(type.name(), result.getStatus().getStatusCode(),
+                                requestNanos, System.nanoTime() - unwrapStartNanos);
+                    } else {
+                        clientPool.metrics().onRequestFinished(type.name(), result.getStatus().getStatusCode(),
+                                requestNanos, 0);
+                        builder.error(type, new ClientException("Awareness request failed. " + result.getStatus().getStatusMessage()));
+                    }
+
+                    if (--remaining > 0) {
+                        return;
+                    }
+                }
+
+                emitter.onSuccess(builder.build());
+            });
+        }
+
+        @Override
+        public void onClientError(@NonNull Throwable throwable) {
+            emitter.onError(throwable);
+        }
+
+        @Override
+        public synchronized void cancel() throws Exception {
+            finished = true;
+
+            for (PendingResult<?> pendingResult : pendingResults) {
+                pendingResult.cancel();
+            }
+            pendingResults.clear();
+
+            if (lease != null) {
+                lease.release();
+                lease = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Util class to encode coordinates as geohashes.
+ * <p>
+ * A geohash names a grid cell of the earth. Each additional character divides the cell into 32
+ * smaller cells, a precision of 7 results in cells of roughly 150m x 150m.
+ */
+class GeoHash {
+
+    static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+        // no instances
+    }
+
+    /**
+     * Encodes the given coordinates.
+     *
+     * @param latitude  latitude in degrees
+     * @param longitude longitude in degrees
+     * @param precision number of characters of the hash, between 1 and {@link #MAX_PRECISION}
+     * @return geohash of the cell containing the coordinates
+     */
+    @NonNull
+    static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between 1 and " + MAX_PRECISION);
+        }
+
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+
+        for (int i = 0; i < precision; ) {
+            if (evenBit) {
+                double mid = (minLongitude + maxLongitude) / 2;
+                if (longitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLongitude = mid;
+                } else {
+                    index = index << 1;
+                    maxLongitude = mid;
+                }
+            } else {
+                double mid = (minLatitude + maxLatitude) / 2;
+                if (latitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLatitude = mid;
+                } else {
+                    index = index << 1;
+                    maxLatitude = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash[i++] = BASE_32[index];
+                bit = 0;
+                index = 0;
+            }
+        }
+
+        return new String(hash);
+    }
+}
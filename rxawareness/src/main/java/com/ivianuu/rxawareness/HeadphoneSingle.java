@@ -16,7 +16,6 @@
 
 package com.ivianuu.rxawareness;
 
-import android.content.Context;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
 
@@ -33,13 +32,13 @@ import io.reactivex.Single;
  */
 class HeadphoneSingle extends BaseAwarenessSingle<Boolean, HeadphoneStateResult> {
 
-    private HeadphoneSingle(Context context) {
-        super(context);
+    HeadphoneSingle(AwarenessClientPool clientPool) {
+        super(clientPool, SnapshotType.HEADPHONES);
     }
 
     @CheckResult @NonNull
-    static Single<Boolean> create(@NonNull Context context) {
-        return Single.create(new HeadphoneSingle(context));
+    static Single<Boolean> create(@NonNull AwarenessClientPool clientPool) {
+        return Single.create(new HeadphoneSingle(clientPool));
     }
 
     @Override
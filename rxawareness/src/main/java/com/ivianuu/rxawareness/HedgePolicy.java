@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how {@link RxSnapshot} hedges requests which take longer than usual.
+ * <p>
+ * Once a request did not return within the hedge delay, it is either answered with the last
+ * value of a previous request of the same kind or a second request is issued and the result
+ * of whichever finishes first is emitted. The hedge delay is fixed or follows a percentile of
+ * the latencies observed so far. Requests which lost keep running until they finish, so their
+ * latency and value are not lost, but at most until the loser timeout or the timeout of the
+ * {@link RxSnapshot} expired.
+ */
+public final class HedgePolicy {
+
+    /**
+     * What to do once a request did not return within the hedge delay.
+     */
+    public enum Mode {
+        /**
+         * Emit the last value of a previous request, which must not be older than the max
+         * fallback age. The running request keeps going to refresh the last value. Requests
+         * without a recent enough previous value keep waiting.
+         */
+        FALLBACK,
+
+        /**
+         * Issue a second request and emit the result of whichever finishes first. Fails once both
+         * requests failed.
+         */
+        DUPLICATE
+    }
+
+    private final Mode mode;
+    private final long delayMillis;
+    private final double percentile;
+    private final long maxFallbackAgeMillis;
+    private final long loserTimeoutMillis;
+
+    private HedgePolicy(Builder builder) {
+        this.mode = builder.mode;
+        this.delayMillis = builder.delayMillis;
+        this.percentile = builder.percentile;
+        this.maxFallbackAgeMillis = builder.maxFallbackAgeMillis;
+        this.loserTimeoutMillis = builder.loserTimeoutMillis;
+    }
+
+    /**
+     * @return what to do once a request did not return within the hedge delay
+     */
+    @NonNull
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the hedge delay in milliseconds, used until enough latencies were observed if a
+     * percentile is set
+     */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * @return the percentile of the observed latencies used as hedge delay or {@code 0} to always
+     * use the fixed delay
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @return the max age in milliseconds of a value emitted by {@link Mode#FALLBACK}
+     */
+    public long getMaxFallbackAgeMillis() {
+        return maxFallbackAgeMillis;
+    }
+
+    /**
+     * @return the time in milliseconds after which requests which lost are canceled, counted from
+     * the start of the hedged request
+     */
+    public long getLoserTimeoutMillis() {
+        return loserTimeoutMillis;
+    }
+
+    /**
+     * Builder for {@link HedgePolicy}s. Defaults to a hedge delay of 2 seconds, a max fallback
+     * age of 1 minute and a loser timeout of 30 seconds.
+     */
+    public static final class Builder {
+
+        private static final long DEFAULT_DELAY_MILLIS = 2000;
+        private static final long DEFAULT_MAX_FALLBACK_AGE_MILLIS = 60000;
+        private static final long DEFAULT_LOSER_TIMEOUT_MILLIS = 30000;
+
+        private final Mode mode;
+        private long delayMillis = DEFAULT_DELAY_MILLIS;
+        private double percentile;
+        private long maxFallbackAgeMillis = DEFAULT_MAX_FALLBACK_AGE_MILLIS;
+        private long loserTimeoutMillis = DEFAULT_LOSER_TIMEOUT_MILLIS;
+
+        /**
+         * @param mode what to do once a request did not return within the hedge delay
+         */
+        public Builder(@NonNull Mode mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * @param time time after which a running request is hedged
+         * @param unit unit of the time
+         * @return this builder
+         */
+        @NonNull
+        public Builder delay(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("time must not be negative");
+            }
+            this.delayMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * Hedges requests which take longer than the given percentile of the latencies observed
+         * for their kind of request, e.g. 95 to hedge the slowest 5%. The fixed delay is used
+         * until enough latencies were observed.
+         *
+         * @param percentile percentile between 0 and 100, {@code 0} to always use the fixed delay
+         * @return this builder
+         */
+        @NonNull
+        public Builder percentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets how old the last value of a previous request may be to be emitted by
+         * {@link Mode#FALLBACK}.
+         *
+         * @param time max age of a fallback value
+         * @param unit unit of the time
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxFallbackAge(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("time must not be negative");
+            }
+            this.maxFallbackAgeMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * Sets how long requests which lost keep running, counted from the start of the hedged
+         * request. Requests of an {@link RxSnapshot} with a shorter timeout are canceled once that
+         * timeout expired instead.
+         *
+         * @param time time after which requests which lost are canceled
+         * @param unit unit of the time
+         * @return this builder
+         */
+        @NonNull
+        public Builder loserTimeout(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("time must not be negative");
+            }
+            this.loserTimeoutMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * @return a new {@link HedgePolicy} with the configuration of this builder
+         */
+        @NonNull
+        public HedgePolicy build() {
+            return new HedgePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link AwarenessMetrics} which records all timings into {@link LatencyHistogram}s per operation
+ * and counts the status codes of the results, the timeouts and the hedge outcomes.
+ */
+public final class LatencyHistogramMetrics implements AwarenessMetrics {
+
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final AtomicLong connectionFailures = new AtomicLong();
+    private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    @Override
+    public void onClientConnected(long connectNanos) {
+        connectLatency.record(connectNanos);
+    }
+
+    @Override
+    public void onClientConnectionFailed(int errorCode, long connectNanos) {
+        connectionFailures.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestFinished(@NonNull String operation, int statusCode, long requestNanos, long unwrapNanos) {
+        OperationStats stats = statsOf(operation);
+        stats.requestLatency.record(requestNanos);
+
+        if (statusCode == CommonStatusCodes.SUCCESS) {
+            stats.unwrapLatency.record(unwrapNanos);
+        }
+
+        AtomicLong statusCount = stats.statusCounts.get(statusCode);
+        if (statusCount == null) {
+            AtomicLong newCount = new AtomicLong();
+            statusCount = stats.statusCounts.putIfAbsent(statusCode, newCount);
+            if (statusCount == null) {
+                statusCount = newCount;
+            }
+        }
+        statusCount.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestTimedOut(@NonNull String operation, long timeoutNanos) {
+        statsOf(operation).timeouts.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestHedged(@NonNull String operation, int outcome) {
+        statsOf(operation).hedgeCounts.incrementAndGet(outcome);
+    }
+
+    /**
+     * @return the latencies of successful client connections
+     */
+    @NonNull
+    public LatencyHistogram getConnectLatency() {
+        return connectLatency;
+    }
+
+    /**
+     * @return the number of failed client connections
+     */
+    public long getConnectionFailureCount() {
+        return connectionFailures.get();
+    }
+
+    /**
+     * @return the names of all operations which reported at least once
+     */
+    @NonNull
+    public Set<String> getOperations() {
+        return operations.keySet();
+    }
+
+    /**
+     * @param operation name of the operation like {@code "WEATHER"}
+     * @return the latencies from issuing requests of the operation until their results arrived,
+     * empty if the operation never reported
+     */
+    @NonNull
+    public LatencyHistogram getRequestLatency(@NonNull String operation) {
+        OperationStats stats = operations.get(operation);
+        return stats != null ? stats.requestLatency : new LatencyHistogram();
+    }
+
+    /**
+     * @param operation name of the operation like {@code "WEATHER"}
+     * @return the latencies of unwrapping successful results of the operation, empty if the
+     * operation never reported
+     */
+    @NonNull
+    public LatencyHistogram getUnwrapLatency(@NonNull String operation) {
+        OperationStats stats = operations.get(operation);
+        return stats != null ? stats.unwrapLatency : new LatencyHistogram();
+    }
+
+    /**
+     * @param operation name of the operation like {@code "WEATHER"}
+     * @return the number of results per status code of the operation
+     */
+    @NonNull
+    public Map<Integer, Long> getStatusCodeCounts(@NonNull String operation) {
+        Map<Integer, Long> counts = new HashMap<>();
+        OperationStats stats = operations.get(operation);
+        if (stats == null) {
+            return counts;
+        }
+
+        for (Map.Entry<Integer, AtomicLong> entry : stats.statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * @param operation name of the operation like {@code "WEATHER"}
+     * @return the number of requests of the operation which timed out
+     */
+    public long getTimeoutCount(@NonNull String operation) {
+        OperationStats stats = operations.get(operation);
+        return stats != null ? stats.timeouts.get() : 0;
+    }
+
+    /**
+     * @param operation name of the operation like {@code "WEATHER"}
+     * @param outcome   one of {@link #HEDGE_PRIMARY_WON}, {@link #HEDGE_SECONDARY_WON} and
+     *                  {@link #HEDGE_FALLBACK}
+     * @return the number of hedged requests of the operation with the given outcome
+     */
+    public long getHedgeCount(@NonNull String operation, int outcome) {
+        OperationStats stats = operations.get(operation);
+        return stats != null ? stats.hedgeCounts.get(outcome) : 0;
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        connectLatency.reset();
+        connectionFailures.set(0);
+        operations.clear();
+    }
+
+    private OperationStats statsOf(String operation) {
+        OperationStats stats = operations.get(operation);
+        if (stats == null) {
+            OperationStats newStats = new OperationStats();
+            stats = operations.putIfAbsent(operation, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    private static final class OperationStats {
+        final LatencyHistogram requestLatency = new LatencyHistogram();
+        final LatencyHistogram unwrapLatency = new LatencyHistogram();
+        final ConcurrentHashMap<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<>();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLongArray hedgeCounts = new AtomicLongArray(HEDGE_FALLBACK + 1);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.DetectedActivity;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how {@link RxSnapshot#observeLocation(LocationPolicy)} polls the location.
+ * <p>
+ * The interval between two polls adapts to how fast the device moves. It is the time the device
+ * needs to cover the min displacement at its reported speed or, if no speed is reported, at the
+ * typical speed of its current activity. The interval is always kept between the min and max
+ * interval. A location is only emitted once it is at least the min displacement away from the
+ * last emitted one.
+ */
+public final class LocationPolicy {
+
+    private static final float SPEED_ON_FOOT = 1.4f;
+    private static final float SPEED_RUNNING = 3f;
+    private static final float SPEED_ON_BICYCLE = 5f;
+    private static final float SPEED_IN_VEHICLE = 15f;
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final float minDisplacementMeters;
+
+    private LocationPolicy(Builder builder) {
+        this.minIntervalMillis = builder.minIntervalMillis;
+        this.maxIntervalMillis = builder.maxIntervalMillis;
+        this.minDisplacementMeters = builder.minDisplacementMeters;
+    }
+
+    /**
+     * @return policy with the default values of {@link Builder}
+     */
+    @NonNull
+    public static LocationPolicy defaultPolicy() {
+        return new Builder().build();
+    }
+
+    /**
+     * @return the min interval between two polls in milliseconds
+     */
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    /**
+     * @return the max interval between two polls in milliseconds
+     */
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    /**
+     * @return the min distance in meters between two emitted locations
+     */
+    public float getMinDisplacementMeters() {
+        return minDisplacementMeters;
+    }
+
+    /**
+     * @param last     last emitted location or {@code null}
+     * @param location new location
+     * @return {@code true} if the new location should be emitted
+     */
+    boolean shouldEmit(@Nullable Location last, @NonNull Location location) {
+        return last == null || last.distanceTo(location) >= minDisplacementMeters;
+    }
+
+    /**
+     * Computes the interval until the next poll.
+     *
+     * @param location last polled location or {@code null}
+     * @param activity last polled activity or {@code null}
+     * @return the interval in milliseconds
+     */
+    long nextIntervalMillis(@Nullable Location location, @Nullable ActivityRecognitionResult activity) {
+        float speed = location != null && location.hasSpeed() ? location.getSpeed() : 0;
+
+        if (speed <= 0 && activity != null) {
+            switch (activity.getMostProbableActivity().getType()) {
+                case DetectedActivity.STILL:
+                    return maxIntervalMillis;
+                case DetectedActivity.ON_FOOT:
+                case DetectedActivity.WALKING:
+                    speed = SPEED_ON_FOOT;
+                    break;
+                case DetectedActivity.RUNNING:
+                    speed = SPEED_RUNNING;
+                    break;
+                case DetectedActivity.ON_BICYCLE:
+                    speed = SPEED_ON_BICYCLE;
+                    break;
+                case DetectedActivity.IN_VEHICLE:
+                    speed = SPEED_IN_VEHICLE;
+                    break;
+            }
+        }
+
+        if (speed <= 0) {
+            return (minIntervalMillis + maxIntervalMillis) / 2;
+        }
+
+        long interval = (long) (minDisplacementMeters / speed * 1000);
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+
+    /**
+     * Builder for {@link LocationPolicy}s.
+     * <p>
+     * Defaults to a min interval of 10 seconds, a max interval of 5 minutes and a min displacement
+     * of 25 meters.
+     */
+    public static final class Builder {
+
+        private long minIntervalMillis = TimeUnit.SECONDS.toMillis(10);
+        private long maxIntervalMillis = TimeUnit.MINUTES.toMillis(5);
+        private float minDisplacementMeters = 25;
+
+        /**
+         * @param interval min interval between two polls
+         * @param unit     unit of the interval
+         * @return this builder
+         */
+        @NonNull
+        public Builder minInterval(long interval, @NonNull TimeUnit unit) {
+            this.minIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * @param interval max interval between two polls
+         * @param unit     unit of the interval
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxInterval(long interval, @NonNull TimeUnit unit) {
+            this.maxIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * @param meters min distance between two emitted locations
+         * @return this builder
+         */
+        @NonNull
+        public Builder minDisplacement(float meters) {
+            this.minDisplacementMeters = meters;
+            return this;
+        }
+
+        /**
+         * @return a new {@link LocationPolicy} with the configuration of this builder
+         */
+        @NonNull
+        public LocationPolicy build() {
+            if (minIntervalMillis <= 0) {
+                throw new IllegalArgumentException("min interval must be positive");
+            }
+            if (maxIntervalMillis < minIntervalMillis) {
+                throw new IllegalArgumentException("max interval must not be smaller than min interval");
+            }
+            if (minDisplacementMeters < 0) {
+                throw new IllegalArgumentException("min displacement must not be negative");
+            }
+            return new LocationPolicy(this);
+        }
+    }
+}
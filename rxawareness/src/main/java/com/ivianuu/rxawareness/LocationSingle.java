@@ -16,7 +16,6 @@
 
 package com.ivianuu.rxawareness;
 
-import android.content.Context;
 import android.location.Location;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
@@ -34,14 +33,14 @@ import io.reactivex.Single;
  */
 class LocationSingle extends BaseAwarenessSingle<Location, LocationResult> {
 
-    private LocationSingle(Context context) {
-        super(context);
+    LocationSingle(AwarenessClientPool clientPool) {
+        super(clientPool, SnapshotType.LOCATION);
     }
 
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @CheckResult @NonNull
-    static Single<Location> create(@NonNull Context context) {
-        return Single.create(new LocationSingle(context));
+    static Single<Location> create(@NonNull AwarenessClientPool clientPool) {
+        return Single.create(new LocationSingle(clientPool));
     }
 
     @Override
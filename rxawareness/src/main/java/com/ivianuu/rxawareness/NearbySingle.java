@@ -16,7 +16,6 @@
 
 package com.ivianuu.rxawareness;
 
-import android.content.Context;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
 import android.support.annotation.RequiresPermission;
@@ -36,14 +35,14 @@ import io.reactivex.Single;
  */
 class NearbySingle extends BaseAwarenessSingle<List<PlaceLikelihood>, PlacesResult> {
 
-    private NearbySingle(Context context) {
-        super(context);
+    NearbySingle(AwarenessClientPool clientPool) {
+        super(clientPool, SnapshotType.PLACES);
     }
 
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @CheckResult @NonNull
-    static Single<List<PlaceLikelihood>> create(Context context) {
-        return Single.create(new NearbySingle(context));
+    static Single<List<PlaceLikelihood>> create(AwarenessClientPool clientPool) {
+        return Single.create(new NearbySingle(clientPool));
     }
 
     @Override
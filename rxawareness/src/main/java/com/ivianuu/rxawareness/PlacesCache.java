@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.location.Location;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.location.places.PlaceLikelihood;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory cache of nearby places keyed by the geohash cell they were requested in.
+ * <p>
+ * Holds at most the configured number of cells and evicts the least recently used one first.
+ * Entries older than the max age are not served anymore.
+ */
+class PlacesCache {
+
+    private final int precision;
+    private final long maxAgeMillis;
+    private final Map<String, Entry> entries;
+
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param maxEntries   max number of cached cells
+     * @param precision    geohash precision of the cells
+     * @param maxAgeMillis max age of an entry
+     */
+    PlacesCache(final int maxEntries, int precision, long maxAgeMillis) {
+        this.precision = precision;
+        this.maxAgeMillis = maxAgeMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached places of the cell containing the given location and records a hit or a
+     * miss.
+     *
+     * @param location current location of the device
+     * @return the cached places or {@code null}
+     */
+    @Nullable
+    synchronized List<PlaceLikelihood> get(@NonNull Location location) {
+        String cell = cellOf(location);
+        Entry entry = entries.get(cell);
+
+        if (entry == null || SystemClock.elapsedRealtime() - entry.timestamp > maxAgeMillis) {
+            if (entry != null) {
+                entries.remove(cell);
+            }
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return entry.places;
+    }
+
+    /**
+     * Stores the places for the cell containing the given location.
+     *
+     * @param location location the places were requested at
+     * @param places   places to cache
+     */
+    synchronized void put(@NonNull Location location, @NonNull List<PlaceLikelihood> places) {
+        entries.put(cellOf(location), new Entry(places, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Removes all entries.
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    @NonNull
+    synchronized CacheStats stats() {
+        return new CacheStats(hitCount, missCount);
+    }
+
+    private String cellOf(Location location) {
+        return GeoHash.encode(location.getLatitude(), location.getLongitude(), precision);
+    }
+
+    private static final class Entry {
+        final List<PlaceLikelihood> places;
+        final long timestamp;
+
+        Entry(List<PlaceLikelihood> places, long timestamp) {
+            this.places = places;
+            this.timestamp = timestamp;
+        }
+    }
+}
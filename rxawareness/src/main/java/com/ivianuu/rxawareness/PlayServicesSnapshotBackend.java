@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.annotation.SuppressLint;
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.awareness.state.Weather;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.places.PlaceLikelihood;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import io.reactivex.Single;
+
+/**
+ * {@link SnapshotBackend} that queries the Snapshot API on the shared client of an
+ * {@link AwarenessClientPool}.
+ */
+@SuppressLint("MissingPermission")
+class PlayServicesSnapshotBackend extends SnapshotBackend {
+
+    private final AwarenessClientPool clientPool;
+
+    PlayServicesSnapshotBackend(@NonNull AwarenessClientPool clientPool) {
+        this.clientPool = clientPool;
+    }
+
+    @NonNull
+    @Override
+    public Single<Weather> getWeather() {
+        return WeatherSingle.create(clientPool);
+    }
+
+    @NonNull
+    @Override
+    public Single<Location> getLocation() {
+        return LocationSingle.create(clientPool);
+    }
+
+    @NonNull
+    @Override
+    public Single<ActivityRecognitionResult> getActivity() {
+        return ActivitySingle.create(clientPool);
+    }
+
+    @NonNull
+    @Override
+    public Single<Boolean> headphonesPluggedIn() {
+        return HeadphoneSingle.create(clientPool);
+    }
+
+    @NonNull
+    @Override
+    public Single<List<PlaceLikelihood>> getNearbyPlaces() {
+        return NearbySingle.create(clientPool);
+    }
+
+    @NonNull
+    @Override
+    public Single<List<BeaconState.BeaconInfo>> getBeacons(@NonNull Collection<BeaconState.TypeFilter> typeFilters) {
+        return BeaconSingle.create(clientPool, typeFilters);
+    }
+
+    /**
+     * Issues all requests in parallel on one client.
+     */
+    @NonNull
+    @Override
+    public Single<ContextSnapshot> getSnapshot(@NonNull EnumSet<SnapshotType> types,
+                                               @Nullable Collection<BeaconState.TypeFilter> typeFilters) {
+        return ContextSnapshotSingle.create(clientPool, types, typeFilters);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.SingleSubject;
+
+/**
+ * Shares one running request between all concurrent subscribers asking for the same key.
+ * <p>
+ * Subscribers arriving while a request for their key is in flight receive the result of that
+ * request instead of starting a new one. Once the request finished or all of its subscribers
+ * disposed, the next subscriber starts a fresh request. The result is kept by the in-flight
+ * entry, so a subscriber which found the entry right before the request finished still receives
+ * it.
+ */
+class RequestCoalescer {
+
+    private final Map<Object, InFlight<?>> inFlight = new HashMap<>();
+
+    /**
+     * Wraps the source so that concurrent subscriptions with an equal key share one subscription
+     * to the source.
+     *
+     * @param key    identity of the request
+     * @param source request to share
+     * @return Single sharing the request with other subscribers of the same key
+     */
+    @NonNull
+    <T> Single<T> coalesce(@NonNull final Object key, @NonNull final Single<T> source) {
+        return Single.defer(() -> {
+            final InFlight<T> entry;
+            final boolean connect;
+            synchronized (this) {
+                @SuppressWarnings("unchecked")
+                InFlight<T> existing = (InFlight<T>) inFlight.get(key);
+
+                connect = existing == null;
+                if (connect) {
+                    entry = new InFlight<>();
+                    inFlight.put(key, entry);
+                } else {
+                    entry = existing;
+                }
+                entry.subscribers++;
+            }
+
+            if (connect) {
+                // the entry is removed before the result is emitted, later subscribers start anew
+                Disposable upstream = source
+                        .doOnEvent((value, error) -> remove(key, entry))
+                        .subscribe(entry.result::onSuccess, entry.result::onError);
+                synchronized (this) {
+                    entry.upstream = upstream;
+                }
+            }
+
+            return entry.result.doOnDispose(() -> release(key, entry));
+        });
+    }
+
+    private synchronized void remove(Object key, InFlight<?> entry) {
+        if (inFlight.get(key) == entry) {
+            inFlight.remove(key);
+        }
+    }
+
+    private synchronized void release(Object key, InFlight<?> entry) {
+        entry.subscribers--;
+        if (entry.subscribers == 0 && inFlight.get(key) == entry) {
+            inFlight.remove(key);
+            entry.upstream.dispose();
+        }
+    }
+
+    private static final class InFlight<T> {
+        final SingleSubject<T> result = SingleSubject.create();
+        int subscribers;
+        Disposable upstream;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Hedges requests as described by a {@link HedgePolicy}.
+ * <p>
+ * The latencies of all successful requests are recorded per {@link SnapshotType} to derive the
+ * percentile based hedge delay. Requests which lost against a hedge therefore keep running until
+ * they finish or the loser timeout expired, unless the subscriber disposes. Hedges which fired are
+ * reported to the metrics.
+ */
+class RequestHedger {
+
+    private static final int MIN_SAMPLES = 20;
+    private static final long MIN_DELAY_MILLIS = 1;
+
+    private final HedgePolicy policy;
+    private final AwarenessMetrics metrics;
+    private final Map<SnapshotType, LatencyHistogram> latencies = new EnumMap<>(SnapshotType.class);
+    private final ConcurrentHashMap<Object, LastValue> lastValues = new ConcurrentHashMap<>();
+
+    RequestHedger(@NonNull HedgePolicy policy, @NonNull AwarenessMetrics metrics) {
+        this.policy = policy;
+        this.metrics = metrics;
+
+        // never modified afterwards, so it can be read without locking
+        for (SnapshotType type : SnapshotType.values()) {
+            latencies.put(type, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Wraps the source so that it is hedged once it did not return within the hedge delay.
+     *
+     * @param type   type of the request
+     * @param key    identity of the request, requests with equal keys share their last value
+     * @param source request to hedge, subscribed a second time by {@link HedgePolicy.Mode#DUPLICATE}
+     * @param timeoutMillis timeout of the caller, which also caps the requests which lost, or
+     *                      {@code 0} for none
+     * @return Single of the hedged request
+     */
+    @NonNull
+    <T> Single<T> hedge(@NonNull final SnapshotType type, @NonNull final Object key,
+                        @NonNull final Single<T> source, long timeoutMillis) {
+        final long loserTimeoutMillis = timeoutMillis > 0
+                ? Math.min(timeoutMillis, policy.getLoserTimeoutMillis()) : policy.getLoserTimeoutMillis();
+        return Single.create(emitter ->
+                new HedgedRequest<>(type, key, source, emitter, loserTimeoutMillis).start(delayMillisOf(type)));
+    }
+
+    private long delayMillisOf(SnapshotType type) {
+        LatencyHistogram latency = latencies.get(type);
+        if (policy.getPercentile() == 0 || latency.getCount() < MIN_SAMPLES) {
+            return policy.getDelayMillis();
+        }
+        // sub-millisecond latencies would otherwise hedge every request right away
+        return Math.max(MIN_DELAY_MILLIS,
+                TimeUnit.NANOSECONDS.toMillis(latency.getPercentileNanos(policy.getPercentile())));
+    }
+
+    /**
+     * A single subscription to a hedged request. The first result wins, the request fails once
+     * every request issued for it failed and no further request will be issued. Requests which
+     * lost are disposed once the loser timeout, counted from the start, expired.
+     */
+    private final class HedgedRequest<T> {
+
+        private final SnapshotType type;
+        private final Object key;
+        private final Single<T> source;
+        private final SingleEmitter<T> emitter;
+        private final long loserTimeoutMillis;
+        private final CompositeDisposable requests = new CompositeDisposable();
+
+        // guarded by this
+        private long startMillis;
+        private boolean done;
+        private boolean hedged;
+        private int running;
+        private Disposable timer;
+
+        HedgedRequest(SnapshotType type, Object key, Single<T> source, SingleEmitter<T> emitter,
+                      long loserTimeoutMillis) {
+            this.type = type;
+            this.key = key;
+            this.source = source;
+            this.emitter = emitter;
+            this.loserTimeoutMillis = loserTimeoutMillis;
+        }
+
+        void start(long delayMillis) {
+            synchronized (this) {
+                running = 1;
+                startMillis = Schedulers.computation().now(TimeUnit.MILLISECONDS);
+            }
+            requests.add(request(true));
+            Disposable timer = Single.timer(delayMillis, TimeUnit.MILLISECONDS)
+                    .subscribe(ignored -> onHedgeDelay());
+            synchronized (this) {
+                this.timer = timer;
+            }
+
+            emitter.setCancellable(() -> {
+                timer.dispose();
+                // requests which lost keep running until the loser timeout to record their latency
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                }
+                requests.dispose();
+            });
+        }
+
+        private Disposable request(final boolean primary) {
+            final long requestStartNanos = System.nanoTime();
+            return source.subscribe(value -> {
+                long now = System.nanoTime();
+                latencies.get(type).record(now - requestStartNanos);
+                if (policy.getMode() == HedgePolicy.Mode.FALLBACK) {
+                    lastValues.put(key, new LastValue(value, now));
+                }
+
+                boolean reportHedge;
+                synchronized (this) {
+                    running--;
+                    if (done) {
+                        if (running == 0) {
+                            requests.dispose();
+                        }
+                        return;
+                    }
+                    done = true;
+                    reportHedge = hedged;
+                }
+                onDone();
+                if (reportHedge) {
+                    metrics.onRequestHedged(type.name(), primary
+                            ? AwarenessMetrics.HEDGE_PRIMARY_WON : AwarenessMetrics.HEDGE_SECONDARY_WON);
+                }
+                emitter.onSuccess(value);
+            }, error -> {
+                synchronized (this) {
+                    running--;
+                    if (done) {
+                        if (running == 0) {
+                            requests.dispose();
+                        }
+                        return;
+                    }
+                    if (running > 0) {
+                        return;
+                    }
+                    done = true;
+                    if (timer != null) {
+                        timer.dispose();
+                    }
+                }
+                emitter.onError(error);
+            });
+        }
+
+        private void onHedgeDelay() {
+            if (policy.getMode() == HedgePolicy.Mode.FALLBACK) {
+                long maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(policy.getMaxFallbackAgeMillis());
+                LastValue lastValue = lastValues.get(key);
+                if (lastValue == null || System.nanoTime() - lastValue.timestampNanos > maxAgeNanos) {
+                    return;
+                }
+
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    done = true;
+                }
+                onDone();
+                metrics.onRequestHedged(type.name(), AwarenessMetrics.HEDGE_FALLBACK);
+                @SuppressWarnings("unchecked")
+                T value = (T) lastValue.value;
+                emitter.onSuccess(value);
+            } else {
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    hedged = true;
+                    running++;
+                }
+                requests.add(request(false));
+            }
+        }
+
+        /**
+         * Disposes the requests which are still running once the loser timeout expired.
+         */
+        private void onDone() {
+            long remainingMillis;
+            synchronized (this) {
+                if (running == 0) {
+                    requests.dispose();
+                    return;
+                }
+                // on the clock of the scheduler the timers run on
+                remainingMillis = loserTimeoutMillis - (Schedulers.computation().now(TimeUnit.MILLISECONDS) - startMillis);
+            }
+
+            // disposed right away if the last loser finished in the meantime
+            requests.add(Single.timer(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS)
+                    .subscribe(ignored -> requests.dispose()));
+        }
+    }
+
+    private static final class LastValue {
+
+        final Object value;
+        final long timestampNanos;
+
+        LastValue(Object value, long timestampNanos) {
+            this.value = value;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+}
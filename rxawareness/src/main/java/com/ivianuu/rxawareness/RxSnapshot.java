@@ -20,8 +20,10 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.location.Location;
 import android.os.Build;
+import android.os.Looper;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.support.annotation.RequiresPermission;
 
@@ -31,56 +33,196 @@ import com.google.android.gms.location.ActivityRecognitionResult;
 import com.google.android.gms.location.DetectedActivity;
 import com.google.android.gms.location.places.PlaceLikelihood;
 import com.google.android.gms.maps.model.LatLng;
+import com.ivianuu.rxplayservices.ClientException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
 import static com.ivianuu.rxawareness.ApiKeyGuard.API_KEY_AWARENESS_API;
 import static com.ivianuu.rxawareness.ApiKeyGuard.API_KEY_BEACON_API;
 import static com.ivianuu.rxawareness.ApiKeyGuard.API_KEY_PLACES_API;
-import static com.ivianuu.rxawareness.ApiKeyGuard.guardWithApiKey;
 
 /**
  * Accessor class for Reactive Context values. All methods exposed query the Snapshot API to give
  * you more information about the users current context.
  * <p>
  * All context events are provided as {@link Single}s which will provide you with exactly the
- * current context state.
+ * current context state. Concurrent subscribers asking for the same context information share one
+ * running request.
+ * <p>
+ * Requests can be given a timeout through {@link Builder#timeout(long, TimeUnit)} or per call
+ * through {@link #withTimeout(long, TimeUnit)}, slow requests can be hedged through
+ * {@link Builder#hedge(HedgePolicy)}.
  */
 @SuppressLint("MissingPermission")
 public class RxSnapshot {
 
+    private static final String SNAPSHOT_OPERATION = "SNAPSHOT";
+
     private final Context context;
+    private final SnapshotBackend backend;
+    private final boolean checkApiKeys;
+    private final AwarenessMetrics metrics;
+    private final long timeoutMillis;
+    private final RequestCoalescer requestCoalescer;
+    @Nullable private final RequestHedger requestHedger;
+    @Nullable private final WeatherCache weatherCache;
+    @Nullable private final PlacesCache placesCache;
 
-    private RxSnapshot(@NonNull Context context) {
-        this.context = context;
+    private RxSnapshot(@NonNull Builder builder) {
+        this.context = builder.context;
+        this.metrics = builder.metrics;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.requestCoalescer = new RequestCoalescer();
+        this.requestHedger = builder.hedgePolicy != null ? new RequestHedger(builder.hedgePolicy, builder.metrics) : null;
+        this.backend = builder.backend != null
+                ? builder.backend
+                : new PlayServicesSnapshotBackend(new AwarenessClientPool(builder.context, builder.connectionLingerMillis,
+                builder.metrics, builder.callbackLooper, builder.callbackScheduler));
+        this.checkApiKeys = builder.backend == null;
+        this.weatherCache = builder.weatherCacheMaxAgeMillis > 0
+                ? new WeatherCache(builder.weatherCacheMaxAgeMillis, builder.weatherCacheMaxDistanceMeters)
+                : null;
+        this.placesCache = builder.placesCacheMaxEntries > 0
+                ? new PlacesCache(builder.placesCacheMaxEntries, builder.placesCachePrecision, builder.placesCacheMaxAgeMillis)
+                : null;
+    }
+
+    private RxSnapshot(@NonNull RxSnapshot source, long timeoutMillis) {
+        this.context = source.context;
+        this.backend = source.backend;
+        this.checkApiKeys = source.checkApiKeys;
+        this.metrics = source.metrics;
+        this.timeoutMillis = timeoutMillis;
+        this.requestCoalescer = source.requestCoalescer;
+        this.requestHedger = source.requestHedger;
+        this.weatherCache = source.weatherCache;
+        this.placesCache = source.placesCache;
     }
 
     /**
      * Creates a new instance of ReactiveSnapshot to give you access to all Snapshot API calls.
+     * <p>
+     * All calls on the returned instance share one connection to the Awareness API. Prefer keeping
+     * a single instance around instead of creating a new one for each call.
+     *
      * @param context context to use, will default to your application context
      * @return instance of ReactiveSnapshot
      */
     @NonNull
     public static RxSnapshot create(@NonNull Context context) {
-        return new RxSnapshot(context.getApplicationContext());
+        return new Builder(context).build();
+    }
+
+    /**
+     * Returns an instance whose requests time out after the given time instead of the default
+     * timeout of this instance. The returned instance shares its connection, caches and running
+     * requests with this one, which makes it cheap enough to be created per call:
+     * <pre>{@code
+     * snapshot.withTimeout(3, TimeUnit.SECONDS).getWeather()
+     * }</pre>
+     *
+     * @param time timeout of each request, {@code 0} for no timeout
+     * @param unit unit of the timeout
+     * @return instance with the given timeout
+     * @see Builder#timeout(long, TimeUnit)
+     */
+    @CheckResult @NonNull
+    public RxSnapshot withTimeout(long time, @NonNull TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        return new RxSnapshot(this, unit.toMillis(time));
     }
 
     /**
      * Returns the current weather information at the devices current location
+     * <p>
+     * If a weather cache was configured through {@link Builder#weatherCache(long, TimeUnit, float)},
+     * a still valid cached result is emitted instead of querying the Awareness API.
      *
      * @return Single event of weather information
      */
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @CheckResult @NonNull
     public Single<Weather> getWeather() {
-        guardWithApiKey(context, API_KEY_AWARENESS_API);
-        return WeatherSingle.create(context);
+        guardWithApiKey(API_KEY_AWARENESS_API);
+
+        final WeatherCache cache = weatherCache;
+        if (cache == null) {
+            return withDeadline(SnapshotType.WEATHER, request(SnapshotType.WEATHER, backend.getWeather()));
+        }
+
+        return withDeadline(SnapshotType.WEATHER, Single.defer(() -> {
+            if (!cache.isLocationAware() || !cache.hasFreshEntry()) {
+                Weather cached = cache.get(null);
+                return cached != null ? Single.just(cached) : fetchAndCacheWeather(cache);
+            }
+
+            return getLocation()
+                    .flatMap(location -> {
+                        Weather cached = cache.get(location);
+                        return cached != null ? Single.just(cached) : fetchAndCacheWeather(cache);
+                    });
+        }));
+    }
+
+    private Single<Weather> fetchAndCacheWeather(final WeatherCache cache) {
+        if (!cache.isLocationAware()) {
+            return request(SnapshotType.WEATHER, backend.getWeather()
+                    .doOnSuccess(weather -> cache.put(weather, null)));
+        }
+
+        // the location is needed to check the entry later on, so request both at once
+        Single<Weather> request = backend
+                .getSnapshot(EnumSet.of(SnapshotType.WEATHER, SnapshotType.LOCATION), null)
+                .flatMap(snapshot -> {
+                    Weather weather = snapshot.getWeather();
+                    if (weather == null) {
+                        Throwable error = snapshot.getError(SnapshotType.WEATHER);
+                        return Single.error(error != null
+                                ? error : new ClientException("Awareness request returned no weather"));
+                    }
+
+                    // an entry without location could never be matched again
+                    if (snapshot.getLocation() != null) {
+                        cache.put(weather, snapshot.getLocation());
+                    }
+                    return Single.just(weather);
+                });
+
+        return request(SnapshotType.WEATHER, request);
+    }
+
+    /**
+     * Returns the hit and miss counters of the weather cache.
+     *
+     * @return current counters of the weather cache. All counters are {@code 0} if no cache was
+     * configured
+     */
+    @NonNull
+    public CacheStats getWeatherCacheStats() {
+        return weatherCache != null ? weatherCache.stats() : new CacheStats(0, 0);
+    }
+
+    /**
+     * Removes the cached weather so that the next request queries the Awareness API.
+     */
+    public void clearWeatherCache() {
+        if (weatherCache != null) {
+            weatherCache.clear();
+        }
     }
 
     /**
@@ -138,23 +280,26 @@ public class RxSnapshot {
      * Provides the current weather conditions at the devices current location
      *
      * @return Single event of the current weather conditions
+     * @see #getWeatherConditionSet()
      */
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @CheckResult @NonNull
     public Single<List<Integer>> getWeatherConditions() {
+        return getWeatherConditionSet()
+                .map(WeatherConditions::toList);
+    }
+
+    /**
+     * Provides the current weather conditions at the devices current location as a compact set
+     * which can be queried without boxing.
+     *
+     * @return Single event of the current weather conditions
+     */
+    @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
+    @CheckResult @NonNull
+    public Single<WeatherConditions> getWeatherConditionSet() {
         return getWeather()
-                .map(weather -> {
-                    Integer[] conditions = new Integer[]{};
-                    for (int i = 0; i < weather.getConditions().length; i++) {
-                        conditions[i] = weather.getConditions()[i];
-                    }
-                    return conditions;
-                })
-                .map(conditions -> {
-                    List<Integer> list = new ArrayList<>(conditions.length);
-                    list.addAll(Arrays.asList(conditions));
-                    return list;
-                });
+                .map(WeatherConditions::from);
     }
 
     /**
@@ -165,8 +310,40 @@ public class RxSnapshot {
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @CheckResult @NonNull
     public Single<Location> getLocation() {
-        guardWithApiKey(context, API_KEY_AWARENESS_API);
-        return LocationSingle.create(context);
+        guardWithApiKey(API_KEY_AWARENESS_API);
+        return withDeadline(SnapshotType.LOCATION, request(SnapshotType.LOCATION, backend.getLocation()));
+    }
+
+    /**
+     * Provides a stream of locations of the device.
+     * <p>
+     * The location is polled in an interval that adapts to the speed and activity of the device as
+     * described by the given policy. Location and activity are requested together on one
+     * connection. Without the activity recognition permission only the reported speed is used.
+     *
+     * @param policy policy describing the polling intervals and min displacement
+     * @return Observable of locations which are at least the min displacement apart
+     */
+    @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
+    @CheckResult @NonNull
+    public Observable<Location> observeLocation(@NonNull final LocationPolicy policy) {
+        guardWithApiKey(API_KEY_AWARENESS_API);
+
+        return Observable.defer(() -> {
+            final LocationPollState state = new LocationPollState();
+
+            return Single
+                    .defer(() -> backend
+                            .getSnapshot(EnumSet.of(SnapshotType.LOCATION, SnapshotType.ACTIVITY), null)
+                            .delaySubscription(state.nextIntervalMillis, TimeUnit.MILLISECONDS))
+                    .doOnSuccess(snapshot -> state.nextIntervalMillis =
+                            policy.nextIntervalMillis(snapshot.getLocation(), snapshot.getActivity()))
+                    .repeat()
+                    .toObservable()
+                    .filter(snapshot -> snapshot.getLocation() != null
+                            && policy.shouldEmit(state.lastLocation, snapshot.getLocation()))
+                    .map(snapshot -> state.lastLocation = snapshot.getLocation());
+        });
     }
 
     /**
@@ -201,8 +378,8 @@ public class RxSnapshot {
     @RequiresPermission("com.google.android.gms.permission.ACTIVITY_RECOGNITION")
     @CheckResult @NonNull
     public Single<ActivityRecognitionResult> getActivity() {
-        guardWithApiKey(context, API_KEY_AWARENESS_API);
-        return ActivitySingle.create(context);
+        guardWithApiKey(API_KEY_AWARENESS_API);
+        return withDeadline(SnapshotType.ACTIVITY, request(SnapshotType.ACTIVITY, backend.getActivity()));
     }
 
     /**
@@ -277,6 +454,19 @@ public class RxSnapshot {
                 });
     }
 
+    /**
+     * Provides the confidences of all detected activities of the device as an
+     * {@link ActivityVector}, which can be queried without allocating.
+     *
+     * @return Single event of the current activity confidences
+     */
+    @RequiresPermission("com.google.android.gms.permission.ACTIVITY_RECOGNITION")
+    @CheckResult @NonNull
+    public Single<ActivityVector> getActivityVector() {
+        return getActivity()
+                .map(ActivityVector::from);
+    }
+
     /**
      * Provides the current state of the headphones.
      *
@@ -284,21 +474,60 @@ public class RxSnapshot {
      */
     @CheckResult @NonNull
     public Single<Boolean> headphonesPluggedIn() {
-        guardWithApiKey(context, API_KEY_AWARENESS_API);
-        return HeadphoneSingle.create(context);
+        guardWithApiKey(API_KEY_AWARENESS_API);
+        return withDeadline(SnapshotType.HEADPHONES, request(SnapshotType.HEADPHONES, backend.headphonesPluggedIn()));
     }
 
     /**
      * Provides the currently nearby places to the current device location.
+     * <p>
+     * If a places cache was configured through
+     * {@link Builder#placesCache(int, int, long, TimeUnit)}, places cached for the area the device
+     * is currently in are emitted instead of querying the Places API.
      *
      * @return Single event of the currently nearby places
      */
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @CheckResult @NonNull
     public Single<List<PlaceLikelihood>> getNearbyPlaces() {
-        guardWithApiKey(context, API_KEY_AWARENESS_API);
-        guardWithApiKey(context, API_KEY_PLACES_API);
-        return NearbySingle.create(context);
+        guardWithApiKey(API_KEY_AWARENESS_API);
+        guardWithApiKey(API_KEY_PLACES_API);
+
+        final PlacesCache cache = placesCache;
+        if (cache == null) {
+            return withDeadline(SnapshotType.PLACES, request(SnapshotType.PLACES, backend.getNearbyPlaces()));
+        }
+
+        return withDeadline(SnapshotType.PLACES, getLocation()
+                .flatMap(location -> {
+                    List<PlaceLikelihood> cached = cache.get(location);
+                    if (cached != null) {
+                        return Single.just(cached);
+                    }
+
+                    return request(SnapshotType.PLACES, backend.getNearbyPlaces()
+                            .doOnSuccess(places -> cache.put(location, places)));
+                }));
+    }
+
+    /**
+     * Returns the hit and miss counters of the places cache.
+     *
+     * @return current counters of the places cache. All counters are {@code 0} if no cache was
+     * configured
+     */
+    @NonNull
+    public CacheStats getPlacesCacheStats() {
+        return placesCache != null ? placesCache.stats() : new CacheStats(0, 0);
+    }
+
+    /**
+     * Removes all cached places so that the next request queries the Places API.
+     */
+    public void clearPlacesCache() {
+        if (placesCache != null) {
+            placesCache.clear();
+        }
     }
 
     /**
@@ -311,9 +540,10 @@ public class RxSnapshot {
     @RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     @CheckResult @NonNull
     public Single<List<BeaconState.BeaconInfo>> getBeacons(@NonNull BeaconState.TypeFilter... typeFilters) {
-        guardWithApiKey(context, API_KEY_AWARENESS_API);
-        guardWithApiKey(context, API_KEY_BEACON_API);
-        return BeaconSingle.create(context, typeFilters);
+        guardWithApiKey(API_KEY_AWARENESS_API);
+        guardWithApiKey(API_KEY_BEACON_API);
+        return withDeadline(SnapshotType.BEACONS, request(SnapshotType.BEACONS, new HashSet<>(Arrays.asList(typeFilters)),
+                backend.getBeacons(Arrays.asList(typeFilters))));
     }
 
     /**
@@ -326,8 +556,394 @@ public class RxSnapshot {
     @RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     @CheckResult @NonNull
     public Single<List<BeaconState.BeaconInfo>> getBeacons(@NonNull Collection<BeaconState.TypeFilter> typeFilters) {
-        guardWithApiKey(context, API_KEY_AWARENESS_API);
-        guardWithApiKey(context, API_KEY_BEACON_API);
-        return BeaconSingle.create(context, typeFilters);
+        guardWithApiKey(API_KEY_AWARENESS_API);
+        guardWithApiKey(API_KEY_BEACON_API);
+        return withDeadline(SnapshotType.BEACONS, request(SnapshotType.BEACONS, new HashSet<>(typeFilters),
+                backend.getBeacons(typeFilters)));
+    }
+
+    /**
+     * Provides the weather, location, activity and headphone state of the device in one combined
+     * snapshot. All requests are issued in parallel on one connection.
+     *
+     * @return Single event of the combined snapshot
+     * @see #getSnapshot(EnumSet)
+     */
+    @RequiresPermission(allOf = {"android.permission.ACCESS_FINE_LOCATION", "com.google.android.gms.permission.ACTIVITY_RECOGNITION"})
+    @CheckResult @NonNull
+    public Single<ContextSnapshot> getAll() {
+        return getSnapshot(EnumSet.of(SnapshotType.WEATHER, SnapshotType.LOCATION,
+                SnapshotType.ACTIVITY, SnapshotType.HEADPHONES));
+    }
+
+    /**
+     * Provides the requested context information in one combined snapshot. All requests are
+     * issued in parallel on one connection.
+     * <p>
+     * Should a single request fail, the snapshot will still be emitted and contain the error for
+     * that type. The permissions of all requested types are required.
+     * <p>
+     * To request {@link SnapshotType#BEACONS}, use {@link #getSnapshot(EnumSet, Collection)}.
+     *
+     * @param types types to request
+     * @return Single event of the combined snapshot
+     */
+    @CheckResult @NonNull
+    public Single<ContextSnapshot> getSnapshot(@NonNull EnumSet<SnapshotType> types) {
+        if (types.contains(SnapshotType.BEACONS)) {
+            throw new IllegalArgumentException("beacon type filters are required to request beacons");
+        }
+        return getSnapshot(types, null);
+    }
+
+    /**
+     * Provides the requested context information in one combined snapshot. All requests are
+     * issued in parallel on one connection.
+     * <p>
+     * Should a single request fail, the snapshot will still be emitted and contain the error for
+     * that type. The permissions of all requested types are required.
+     *
+     * @param types       types to request
+     * @param typeFilters Beacon TypeFilters to filter for if {@link SnapshotType#BEACONS} is requested
+     * @return Single event of the combined snapshot
+     */
+    @CheckResult @NonNull
+    public Single<ContextSnapshot> getSnapshot(@NonNull EnumSet<SnapshotType> types,
+                                               @Nullable Collection<BeaconState.TypeFilter> typeFilters) {
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("at least one snapshot type is required");
+        }
+        if (types.contains(SnapshotType.BEACONS) && typeFilters == null) {
+            throw new IllegalArgumentException("beacon type filters are required to request beacons");
+        }
+
+        guardWithApiKey(API_KEY_AWARENESS_API);
+        if (types.contains(SnapshotType.PLACES)) {
+            guardWithApiKey(API_KEY_PLACES_API);
+        }
+        if (types.contains(SnapshotType.BEACONS)) {
+            guardWithApiKey(API_KEY_BEACON_API);
+        }
+
+        return withDeadline(SNAPSHOT_OPERATION, backend.getSnapshot(types, typeFilters));
+    }
+
+    /**
+     * Provides a stream of changes of the nearby beacons.
+     * <p>
+     * The beacons are polled in the given interval and each poll is diffed against the previous
+     * one. All beacons found by the first poll are emitted as entered.
+     *
+     * @param typeFilters Beacon TypeFilters to filter for
+     * @param interval    interval between two polls, has to be positive
+     * @param unit        unit of the interval
+     * @return Observable of beacon changes
+     */
+    @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @CheckResult @NonNull
+    public Observable<BeaconDelta> observeBeacons(@NonNull final Collection<BeaconState.TypeFilter> typeFilters,
+                                                  final long interval,
+                                                  @NonNull final TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+
+        final Single<List<BeaconState.BeaconInfo>> beacons = getBeacons(typeFilters);
+
+        return Observable.defer(() -> {
+            final BeaconDiffer differ = new BeaconDiffer();
+
+            return beacons
+                    .repeatWhen(completions -> completions.delay(interval, unit))
+                    .toObservable()
+                    .flatMapIterable(differ::diff);
+        });
+    }
+
+    private <T> Single<T> request(SnapshotType type, Single<T> source) {
+        return request(type, type, source);
+    }
+
+    /**
+     * Shares the request with concurrent subscribers of the same key and hedges it if a hedge
+     * policy was configured.
+     */
+    private <T> Single<T> request(SnapshotType type, Object key, Single<T> source) {
+        Single<T> request = requestHedger != null ? requestHedger.hedge(type, key, source, timeoutMillis) : source;
+        return requestCoalescer.coalesce(key, request);
+    }
+
+    private <T> Single<T> withDeadline(SnapshotType type, Single<T> single) {
+        return withDeadline(type.name(), single);
+    }
+
+    /**
+     * Fails the Single with a {@link TimeoutException} once it did not emit within the timeout of
+     * this instance. Disposing the request cancels its pending result.
+     */
+    private <T> Single<T> withDeadline(final String operation, Single<T> single) {
+        final long timeout = timeoutMillis;
+        if (timeout == 0) {
+            return single;
+        }
+
+        return single.timeout(timeout, TimeUnit.MILLISECONDS, Single.defer(() -> {
+            metrics.onRequestTimedOut(operation, TimeUnit.MILLISECONDS.toNanos(timeout));
+            return Single.<T>error(new TimeoutException(operation + " request timed out after " + timeout + "ms"));
+        }));
+    }
+
+    private void guardWithApiKey(String apiKey) {
+        // custom backends don't talk to the Awareness API
+        if (checkApiKeys) {
+            ApiKeyGuard.guardWithApiKey(context, apiKey);
+        }
+    }
+
+    /**
+     * Builder for customized {@link RxSnapshot} instances.
+     */
+    public static final class Builder {
+
+        private static final int DEFAULT_PLACES_CACHE_PRECISION = 7;
+
+        private final Context context;
+        private long connectionLingerMillis = AwarenessClientPool.DEFAULT_LINGER_MILLIS;
+        private AwarenessMetrics metrics = AwarenessMetrics.NONE;
+        private long weatherCacheMaxAgeMillis;
+        private float weatherCacheMaxDistanceMeters;
+        private int placesCacheMaxEntries;
+        private int placesCachePrecision;
+        private long placesCacheMaxAgeMillis;
+        @Nullable private SnapshotBackend backend;
+        @Nullable private Looper callbackLooper;
+        @Nullable private Scheduler callbackScheduler;
+        private long timeoutMillis;
+        @Nullable private HedgePolicy hedgePolicy;
+
+        /**
+         * @param context context to use, will default to your application context
+         */
+        public Builder(@NonNull Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        /**
+         * Sets how long the shared connection to the Awareness API is kept alive after the last
+         * running request finished. Requests issued within this period reuse the connection
+         * instead of connecting again. Pass {@code 0} to disconnect immediately.
+         *
+         * @param time linger time
+         * @param unit unit of the linger time
+         * @return this builder
+         */
+        @NonNull
+        public Builder connectionLinger(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("linger time must not be negative");
+            }
+            this.connectionLingerMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * Sets the metrics that connections and requests report their timings to. Requests report
+         * the name of their {@link SnapshotType} as operation.
+         *
+         * @param metrics metrics to report to, e.g. a {@link LatencyHistogramMetrics}
+         * @return this builder
+         */
+        @NonNull
+        public Builder metrics(@NonNull AwarenessMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Enables caching of weather results. Cached results are served by
+         * {@link RxSnapshot#getWeather()} and all getters derived from it until they are older
+         * than the given max age.
+         *
+         * @param maxAge max age of a cached result
+         * @param unit   unit of the max age
+         * @return this builder
+         */
+        @NonNull
+        public Builder weatherCache(long maxAge, @NonNull TimeUnit unit) {
+            return weatherCache(maxAge, unit, 0);
+        }
+
+        /**
+         * Enables caching of weather results. Cached results are served by
+         * {@link RxSnapshot#getWeather()} and all getters derived from it until they are older
+         * than the given max age or the device moved further than the given distance away from
+         * where they were taken.
+         * <p>
+         * Checking the distance requires a location request, which is cheaper than a weather
+         * request but not free.
+         *
+         * @param maxAge            max age of a cached result
+         * @param unit              unit of the max age
+         * @param maxDistanceMeters max distance in meters, {@code 0} to ignore the location
+         * @return this builder
+         */
+        @NonNull
+        public Builder weatherCache(long maxAge, @NonNull TimeUnit unit, float maxDistanceMeters) {
+            if (maxAge <= 0) {
+                throw new IllegalArgumentException("max age must be positive");
+            }
+            if (maxDistanceMeters < 0) {
+                throw new IllegalArgumentException("max distance must not be negative");
+            }
+            this.weatherCacheMaxAgeMillis = unit.toMillis(maxAge);
+            this.weatherCacheMaxDistanceMeters = maxDistanceMeters;
+            return this;
+        }
+
+        /**
+         * Enables caching of nearby places. Places are cached per area of roughly 150m x 150m.
+         *
+         * @param maxEntries max number of cached areas, the least recently used area is evicted
+         *                   first
+         * @param maxAge     max age of a cached result
+         * @param unit       unit of the max age
+         * @return this builder
+         * @see #placesCache(int, int, long, TimeUnit)
+         */
+        @NonNull
+        public Builder placesCache(int maxEntries, long maxAge, @NonNull TimeUnit unit) {
+            return placesCache(maxEntries, DEFAULT_PLACES_CACHE_PRECISION, maxAge, unit);
+        }
+
+        /**
+         * Enables caching of nearby places. Places are cached per geohash cell of the location
+         * they were requested at and served by {@link RxSnapshot#getNearbyPlaces()} while the
+         * device is in the same cell.
+         * <p>
+         * Looking up the cell requires a location request, which is cheaper than a places request.
+         *
+         * @param maxEntries max number of cached cells, the least recently used cell is evicted
+         *                   first
+         * @param precision  geohash precision between 1 and 12. Higher values mean smaller cells,
+         *                   7 results in cells of roughly 150m x 150m
+         * @param maxAge     max age of a cached result
+         * @param unit       unit of the max age
+         * @return this builder
+         */
+        @NonNull
+        public Builder placesCache(int maxEntries, int precision, long maxAge, @NonNull TimeUnit unit) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("max entries must be positive");
+            }
+            if (precision < 1 || precision > GeoHash.MAX_PRECISION) {
+                throw new IllegalArgumentException("precision must be between 1 and " + GeoHash.MAX_PRECISION);
+            }
+            if (maxAge <= 0) {
+                throw new IllegalArgumentException("max age must be positive");
+            }
+            this.placesCacheMaxEntries = maxEntries;
+            this.placesCachePrecision = precision;
+            this.placesCacheMaxAgeMillis = unit.toMillis(maxAge);
+            return this;
+        }
+
+        /**
+         * Sets the looper that results of the Awareness API are delivered on instead of the main
+         * looper. Subscribers which move the results to a background thread anyway save the hop
+         * through the main thread with a looper of a {@link android.os.HandlerThread}.
+         * <p>
+         * Replaces a callback scheduler set before. Only applies to the default backend.
+         *
+         * @param looper looper to deliver results on
+         * @return this builder
+         * @see #callbackScheduler(Scheduler)
+         */
+        @NonNull
+        public Builder callbackLooper(@NonNull Looper looper) {
+            this.callbackLooper = looper;
+            this.callbackScheduler = null;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that results of the Awareness API are delivered on instead of the
+         * main looper. The client receives the results on a background thread of its own while
+         * it is connected and hands them over to the scheduler, so no thread of the scheduler
+         * waits for a running request.
+         * <p>
+         * Replaces a callback looper set before. Only applies to the default backend.
+         *
+         * @param scheduler scheduler to deliver results on
+         * @return this builder
+         * @see #callbackLooper(Looper)
+         */
+        @NonNull
+        public Builder callbackScheduler(@NonNull Scheduler scheduler) {
+            this.callbackScheduler = scheduler;
+            this.callbackLooper = null;
+            return this;
+        }
+
+        /**
+         * Sets the default timeout of all requests. Requests which did not finish in time fail
+         * with a {@link TimeoutException} and are canceled. Combined snapshots report
+         * {@code "SNAPSHOT"} as operation to {@link AwarenessMetrics#onRequestTimedOut(String, long)}.
+         *
+         * @param time timeout of each request, {@code 0} for no timeout
+         * @param unit unit of the timeout
+         * @return this builder
+         * @see RxSnapshot#withTimeout(long, TimeUnit)
+         */
+        @NonNull
+        public Builder timeout(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("timeout must not be negative");
+            }
+            this.timeoutMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * Enables hedging of requests which take longer than usual, see {@link HedgePolicy}.
+         * Hedging applies to all requests of a single {@link SnapshotType}, combined snapshots are
+         * never hedged. The outcomes are reported to
+         * {@link AwarenessMetrics#onRequestHedged(String, int)}.
+         *
+         * @param policy policy describing when and how to hedge
+         * @return this builder
+         */
+        @NonNull
+        public Builder hedge(@NonNull HedgePolicy policy) {
+            this.hedgePolicy = policy;
+            return this;
+        }
+
+        /**
+         * Sets the backend that context information is requested from instead of the Snapshot
+         * API. The connection linger time, callback thread and the connection and request metrics
+         * only apply to the default backend.
+         *
+         * @param backend backend to use
+         * @return this builder
+         */
+        @NonNull
+        public Builder backend(@NonNull SnapshotBackend backend) {
+            this.backend = backend;
+            return this;
+        }
+
+        /**
+         * @return a new {@link RxSnapshot} with the configuration of this builder
+         */
+        @NonNull
+        public RxSnapshot build() {
+            return new RxSnapshot(this);
+        }
+    }
+
+    private static final class LocationPollState {
+        long nextIntervalMillis;
+        Location lastLocation;
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.location.Location;
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.state.BeaconState;
+import com.google.android.gms.awareness.state.Weather;
+import com.google.android.gms.location.ActivityRecognitionResult;
+import com.google.android.gms.location.places.PlaceLikelihood;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Source of the raw context information {@link RxSnapshot} is built on.
+ * <p>
+ * By default the Snapshot API of the Awareness API is used. Other implementations, e.g. a fake
+ * backend, can be set through {@link RxSnapshot.Builder#backend(SnapshotBackend)}.
+ */
+public abstract class SnapshotBackend {
+
+    /**
+     * @return Single event of the current weather
+     */
+    @CheckResult @NonNull
+    public abstract Single<Weather> getWeather();
+
+    /**
+     * @return Single event of the current location
+     */
+    @CheckResult @NonNull
+    public abstract Single<Location> getLocation();
+
+    /**
+     * @return Single event of the current activity
+     */
+    @CheckResult @NonNull
+    public abstract Single<ActivityRecognitionResult> getActivity();
+
+    /**
+     * @return Single event of whether headphones are plugged in
+     */
+    @CheckResult @NonNull
+    public abstract Single<Boolean> headphonesPluggedIn();
+
+    /**
+     * @return Single event of the nearby places
+     */
+    @CheckResult @NonNull
+    public abstract Single<List<PlaceLikelihood>> getNearbyPlaces();
+
+    /**
+     * @param typeFilters Beacon TypeFilters to filter for
+     * @return Single event of the nearby beacons
+     */
+    @CheckResult @NonNull
+    public abstract Single<List<BeaconState.BeaconInfo>> getBeacons(@NonNull Collection<BeaconState.TypeFilter> typeFilters);
+
+    /**
+     * Provides the requested context information in one combined snapshot. Failing requests are
+     * reported in the snapshot instead of failing the Single.
+     * <p>
+     * Subscribes to the single requests of all types at once by default.
+     *
+     * @param types       types to request
+     * @param typeFilters Beacon TypeFilters to filter for if {@link SnapshotType#BEACONS} is requested
+     * @return Single event of the combined snapshot
+     */
+    @CheckResult @NonNull
+    public Single<ContextSnapshot> getSnapshot(@NonNull final EnumSet<SnapshotType> types,
+                                               @Nullable final Collection<BeaconState.TypeFilter> typeFilters) {
+        return Single.defer(() -> {
+            final ContextSnapshot.Builder builder = new ContextSnapshot.Builder(EnumSet.copyOf(types));
+            List<Single<Object>> requests = new ArrayList<>(types.size());
+
+            for (SnapshotType type : types) {
+                switch (type) {
+                    case WEATHER:
+                        requests.add(collect(type, getWeather(), builder, builder::weather));
+                        break;
+                    case LOCATION:
+                        requests.add(collect(type, getLocation(), builder, builder::location));
+                        break;
+                    case ACTIVITY:
+                        requests.add(collect(type, getActivity(), builder, builder::activity));
+                        break;
+                    case HEADPHONES:
+                        requests.add(collect(type, headphonesPluggedIn(), builder, builder::headphonesPluggedIn));
+                        break;
+                    case PLACES:
+                        requests.add(collect(type, getNearbyPlaces(), builder, builder::nearbyPlaces));
+                        break;
+                    case BEACONS:
+                        requests.add(collect(type, getBeacons(typeFilters), builder, builder::beacons));
+                        break;
+                }
+            }
+
+            return Single.merge(requests)
+                    .ignoreElements()
+                    .toSingle(builder::build);
+        });
+    }
+
+    private static <T> Single<Object> collect(final SnapshotType type,
+                                              Single<T> request,
+                                              final ContextSnapshot.Builder builder,
+                                              final Consumer<T> consumer) {
+        return request
+                .map(value -> {
+                    synchronized (builder) {
+                        consumer.accept(value);
+                    }
+                    return (Object) value;
+                })
+                .onErrorReturn(error -> {
+                    synchronized (builder) {
+                        builder.error(type, error);
+                    }
+                    return error;
+                });
+    }
+}
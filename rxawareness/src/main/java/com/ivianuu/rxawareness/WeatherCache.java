@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.location.Location;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.awareness.state.Weather;
+
+/**
+ * In-memory cache of the last weather result.
+ * <p>
+ * An entry is valid until it is older than the max age. If a max distance is set, it is also only
+ * valid while the device is within that distance of the location the weather was taken at.
+ */
+class WeatherCache {
+
+    private final long maxAgeMillis;
+    private final float maxDistanceMeters;
+
+    private Weather weather;
+    private Location location;
+    private long timestamp;
+
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param maxAgeMillis      max age of an entry
+     * @param maxDistanceMeters max distance from the entries location, {@code 0} to ignore the
+     *                          location
+     */
+    WeatherCache(long maxAgeMillis, float maxDistanceMeters) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxDistanceMeters = maxDistanceMeters;
+    }
+
+    /**
+     * @return {@code true} if the current location is needed to check entries
+     */
+    boolean isLocationAware() {
+        return maxDistanceMeters > 0;
+    }
+
+    /**
+     * @return {@code true} if there is an entry which is not expired yet
+     */
+    synchronized boolean hasFreshEntry() {
+        return weather != null && SystemClock.elapsedRealtime() - timestamp <= maxAgeMillis;
+    }
+
+    /**
+     * Returns the cached weather if it is still valid at the given location and records a hit or
+     * a miss.
+     *
+     * @param currentLocation current location of the device, ignored if the cache is not
+     *                        location aware
+     * @return the cached weather or {@code null}
+     */
+    @Nullable
+    synchronized Weather get(@Nullable Location currentLocation) {
+        if (!hasFreshEntry() || (isLocationAware() && !isNearby(currentLocation))) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return weather;
+    }
+
+    /**
+     * Stores a new entry.
+     *
+     * @param weather  weather to cache
+     * @param location location the weather was taken at or {@code null} if unknown
+     */
+    synchronized void put(@NonNull Weather weather, @Nullable Location location) {
+        this.weather = weather;
+        this.location = location;
+        this.timestamp = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Removes the current entry.
+     */
+    synchronized void clear() {
+        weather = null;
+        location = null;
+    }
+
+    @NonNull
+    synchronized CacheStats stats() {
+        return new CacheStats(hitCount, missCount);
+    }
+
+    private boolean isNearby(@Nullable Location currentLocation) {
+        return currentLocation != null
+                && location != null
+                && location.distanceTo(currentLocation) <= maxDistanceMeters;
+    }
+}
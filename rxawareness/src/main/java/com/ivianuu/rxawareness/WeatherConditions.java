@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.awareness.state.Weather;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable set of weather conditions like {@link Weather#CONDITION_RAINY}.
+ * <p>
+ * The conditions are stored as bits of a single {@code long}, so querying and iterating them does
+ * not allocate. To iterate all conditions use:
+ * <pre>
+ * for (int c = conditions.nextCondition(0); c >= 0; c = conditions.nextCondition(c + 1)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class WeatherConditions {
+
+    private static final int MAX_CONDITION = Long.SIZE - 1;
+
+    private final long bits;
+
+    private WeatherConditions(long bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Creates a set of the conditions of the given weather.
+     *
+     * @param weather weather to take the conditions from
+     * @return set of the conditions
+     */
+    @NonNull
+    public static WeatherConditions from(@NonNull Weather weather) {
+        return of(weather.getConditions());
+    }
+
+    /**
+     * Creates a set of the given conditions.
+     *
+     * @param conditions conditions like {@link Weather#CONDITION_RAINY}
+     * @return set of the conditions
+     */
+    @NonNull
+    public static WeatherConditions of(@NonNull int... conditions) {
+        long bits = 0;
+        for (int condition : conditions) {
+            if (condition < 0 || condition > MAX_CONDITION) {
+                throw new IllegalArgumentException("unknown weather condition " + condition);
+            }
+            bits |= 1L << condition;
+        }
+        return new WeatherConditions(bits);
+    }
+
+    /**
+     * @param condition condition like {@link Weather#CONDITION_RAINY}
+     * @return {@code true} if the given condition is contained
+     */
+    public boolean contains(int condition) {
+        return condition >= 0 && condition <= MAX_CONDITION && (bits & (1L << condition)) != 0;
+    }
+
+    /**
+     * @return the number of contained conditions
+     */
+    public int size() {
+        return Long.bitCount(bits);
+    }
+
+    /**
+     * @return {@code true} if no condition is contained
+     */
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    /**
+     * Returns the smallest contained condition which is greater than or equal to the given one.
+     *
+     * @param fromCondition condition to start searching at
+     * @return the next contained condition or {@code -1} if there is none
+     */
+    public int nextCondition(int fromCondition) {
+        if (fromCondition > MAX_CONDITION) {
+            return -1;
+        }
+        long remaining = bits & (-1L << Math.max(fromCondition, 0));
+        return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+    }
+
+    /**
+     * @return the contained conditions in ascending order
+     */
+    @NonNull
+    public int[] toArray() {
+        int[] conditions = new int[size()];
+        int i = 0;
+        for (int c = nextCondition(0); c >= 0; c = nextCondition(c + 1)) {
+            conditions[i++] = c;
+        }
+        return conditions;
+    }
+
+    /**
+     * @return the contained conditions in ascending order
+     */
+    @NonNull
+    public List<Integer> toList() {
+        List<Integer> conditions = new ArrayList<>(size());
+        for (int c = nextCondition(0); c >= 0; c = nextCondition(c + 1)) {
+            conditions.add(c);
+        }
+        return conditions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof WeatherConditions && ((WeatherConditions) o).bits == bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("WeatherConditions[");
+        for (int c = nextCondition(0); c >= 0; c = nextCondition(c + 1)) {
+            if (builder.charAt(builder.length() - 1) != '[') {
+                builder.append(", ");
+            }
+            builder.append(c);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -16,7 +16,6 @@
 
 package com.ivianuu.rxawareness;
 
-import android.content.Context;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
 import android.support.annotation.RequiresPermission;
@@ -35,14 +34,14 @@ import io.reactivex.Single;
  */
 class WeatherSingle extends BaseAwarenessSingle<Weather, WeatherResult> {
 
-    private WeatherSingle(Context context) {
-        super(context);
+    WeatherSingle(AwarenessClientPool clientPool) {
+        super(clientPool, SnapshotType.WEATHER);
     }
 
     @RequiresPermission("android.permission.ACCESS_FINE_LOCATION")
     @CheckResult @NonNull
-    static Single<Weather> create(Context context) {
-        return Single.create(new WeatherSingle(context));
+    static Single<Weather> create(AwarenessClientPool clientPool) {
+        return Single.create(new WeatherSingle(clientPool));
     }
 
     @Override
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import com.google.android.gms.awareness.state.BeaconState;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BeaconDifferTest {
+
+    @Test
+    public void firstDiffEntersAllBeacons() {
+        BeaconDiffer differ = new BeaconDiffer();
+        BeaconState.BeaconInfo first = beacon("type", "a");
+        BeaconState.BeaconInfo second = beacon("type", "b");
+
+        List<BeaconDelta> deltas = differ.diff(Arrays.asList(first, second));
+
+        assertEquals(2, deltas.size());
+        for (BeaconDelta delta : deltas) {
+            assertEquals(BeaconDelta.Type.ENTERED, delta.getType());
+        }
+    }
+
+    @Test
+    public void unchangedBeaconsProduceNoDeltas() {
+        BeaconDiffer differ = new BeaconDiffer();
+        differ.diff(Collections.singletonList(beacon("type", "a")));
+
+        // equal by namespace, type and content, not by instance
+        assertTrue(differ.diff(Collections.singletonList(beacon("type", "a"))).isEmpty());
+    }
+
+    @Test
+    public void reportsEnteredAndExitedBeacons() {
+        BeaconDiffer differ = new BeaconDiffer();
+        BeaconState.BeaconInfo staying = beacon("type", "a");
+        BeaconState.BeaconInfo leaving = beacon("type", "b");
+        BeaconState.BeaconInfo coming = beacon("type", "c");
+        differ.diff(Arrays.asList(staying, leaving));
+
+        List<BeaconDelta> deltas = differ.diff(Arrays.asList(staying, coming));
+
+        assertEquals(2, deltas.size());
+        assertEquals(BeaconDelta.Type.ENTERED, deltas.get(0).getType());
+        assertSame(coming, deltas.get(0).getBeacon());
+        assertEquals(BeaconDelta.Type.EXITED, deltas.get(1).getType());
+        assertSame(leaving, deltas.get(1).getBeacon());
+    }
+
+    @Test
+    public void changedAttachmentIsExitAndEnter() {
+        BeaconDiffer differ = new BeaconDiffer();
+        BeaconState.BeaconInfo previous = beacon("type", "a");
+        BeaconState.BeaconInfo changed = beacon("type", "b");
+        differ.diff(Collections.singletonList(previous));
+
+        List<BeaconDelta> deltas = differ.diff(Collections.singletonList(changed));
+
+        assertEquals(2, deltas.size());
+        assertEquals(BeaconDelta.Type.ENTERED, deltas.get(0).getType());
+        assertSame(changed, deltas.get(0).getBeacon());
+        assertEquals(BeaconDelta.Type.EXITED, deltas.get(1).getType());
+        assertSame(previous, deltas.get(1).getBeacon());
+    }
+
+    @Test
+    public void emptyListExitsAllBeacons() {
+        BeaconDiffer differ = new BeaconDiffer();
+        differ.diff(Arrays.asList(beacon("type", "a"), beacon("type", "b")));
+
+        List<BeaconDelta> deltas = differ.diff(Collections.<BeaconState.BeaconInfo>emptyList());
+
+        assertEquals(2, deltas.size());
+        for (BeaconDelta delta : deltas) {
+            assertEquals(BeaconDelta.Type.EXITED, delta.getType());
+        }
+    }
+
+    private static BeaconState.BeaconInfo beacon(String type, String content) {
+        return new TestBeacon("namespace", type, content.getBytes());
+    }
+
+    private static final class TestBeacon implements BeaconState.BeaconInfo {
+
+        private final String namespace;
+        private final String type;
+        private final byte[] content;
+
+        TestBeacon(String namespace, String type, byte[] content) {
+            this.namespace = namespace;
+            this.type = type;
+            this.content = content;
+        }
+
+        @Override
+        public String getNamespace() {
+            return namespace;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public byte[] getContent() {
+            return content;
+        }
+    }
+}
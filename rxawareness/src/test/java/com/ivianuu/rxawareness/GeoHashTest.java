@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeoHashTest {
+
+    @Test
+    public void encodesKnownHashes() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHash.encode(42.6, -5.6, 5));
+        assertEquals("s0000", GeoHash.encode(0, 0, 5));
+    }
+
+    @Test
+    public void encodesCorners() {
+        assertEquals("000000000000", GeoHash.encode(-90, -180, GeoHash.MAX_PRECISION));
+        assertEquals("zzzzzzzzzzzz", GeoHash.encode(90, 180, GeoHash.MAX_PRECISION));
+    }
+
+    @Test
+    public void lowerPrecisionIsPrefix() {
+        String hash = GeoHash.encode(52.520008, 13.404954, GeoHash.MAX_PRECISION);
+        for (int precision = 1; precision < GeoHash.MAX_PRECISION; precision++) {
+            assertTrue(hash.startsWith(GeoHash.encode(52.520008, 13.404954, precision)));
+        }
+    }
+
+    @Test
+    public void nearbyCoordinatesShareCell() {
+        // roughly 15m apart within cell u4pruyd
+        assertEquals("u4pruyd", GeoHash.encode(57.64911, 10.40744, 7));
+        assertEquals("u4pruyd", GeoHash.encode(57.64921, 10.40760, 7));
+        // roughly 1km apart
+        assertNotEquals(GeoHash.encode(57.64911, 10.40744, 7), GeoHash.encode(57.65811, 10.40744, 7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroPrecision() {
+        GeoHash.encode(0, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooHighPrecision() {
+        GeoHash.encode(0, 0, GeoHash.MAX_PRECISION + 1);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    public void recordsCountMeanAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(50500), histogram.getMeanNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMaxNanos());
+    }
+
+    @Test
+    public void percentilesAreWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertPercentile(500, histogram.getPercentileNanos(50));
+        assertPercentile(900, histogram.getPercentileNanos(90));
+        assertPercentile(990, histogram.getPercentileNanos(99));
+        assertEquals(histogram.getMaxNanos(), histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void smallLatenciesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(5));
+
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(3), histogram.getPercentileNanos(50));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(5), histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void hugeLatenciesAreCountedInLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.DAYS.toNanos(30));
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(TimeUnit.DAYS.toNanos(30), histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void negativeLatenciesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1000);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void resetRemovesAllLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentileAbove100() {
+        new LatencyHistogram().getPercentileNanos(101);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativePercentile() {
+        new LatencyHistogram().getPercentileNanos(-1);
+    }
+
+    private static void assertPercentile(long expectedMillis, long actualNanos) {
+        long expectedNanos = TimeUnit.MILLISECONDS.toNanos(expectedMillis);
+        assertTrue("expected at least " + expectedNanos + " but was " + actualNanos, actualNanos >= expectedNanos);
+        assertTrue("expected at most 12.5% above " + expectedNanos + " but was " + actualNanos,
+                actualNanos <= expectedNanos + expectedNanos / 8);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.SingleSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final List<SingleSubject<String>> requests = new ArrayList<>();
+    private final Single<String> source = Single.defer(() -> {
+        SingleSubject<String> request = SingleSubject.create();
+        requests.add(request);
+        return request;
+    });
+
+    @Test
+    public void sharesRunningRequest() {
+        TestObserver<String> first = coalescer.coalesce("key", source).test();
+        TestObserver<String> second = coalescer.coalesce("key", source).test();
+
+        requests.get(0).onSuccess("value");
+
+        assertEquals(1, requests.size());
+        first.assertResult("value");
+        second.assertResult("value");
+    }
+
+    @Test
+    public void sharesErrors() {
+        TestObserver<String> first = coalescer.coalesce("key", source).test();
+        TestObserver<String> second = coalescer.coalesce("key", source).test();
+
+        requests.get(0).onError(new IllegalStateException());
+
+        first.assertError(IllegalStateException.class);
+        second.assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void keysAreCoalescedIndependently() {
+        coalescer.coalesce("key", source).test();
+        coalescer.coalesce("other", source).test();
+
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void startsNewRequestOnceFinished() {
+        coalescer.coalesce("key", source).test();
+        requests.get(0).onSuccess("first");
+
+        TestObserver<String> observer = coalescer.coalesce("key", source).test();
+        requests.get(1).onSuccess("second");
+
+        observer.assertResult("second");
+    }
+
+    @Test
+    public void subscriberArrivingWhileResultIsEmittedStartsNewRequest() {
+        final List<TestObserver<String>> late = new ArrayList<>();
+        coalescer.coalesce("key", source)
+                .subscribe(value -> late.add(coalescer.coalesce("key", source).test()));
+
+        requests.get(0).onSuccess("first");
+        requests.get(1).onSuccess("second");
+
+        late.get(0).assertResult("second");
+    }
+
+    @Test
+    public void disposingAllSubscribersCancelsRequest() {
+        TestObserver<String> first = coalescer.coalesce("key", source).test();
+        TestObserver<String> second = coalescer.coalesce("key", source).test();
+
+        first.dispose();
+        second.dispose();
+
+        assertFalse(requests.get(0).hasObservers());
+        coalescer.coalesce("key", source).test();
+        assertEquals(2, requests.size());
+    }
+}
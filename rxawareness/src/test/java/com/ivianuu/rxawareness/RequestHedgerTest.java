@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.rxawareness;
+
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.SingleSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestHedgerTest {
+
+    private static final HedgePolicy FALLBACK = new HedgePolicy.Builder(HedgePolicy.Mode.FALLBACK).build();
+    private static final HedgePolicy DUPLICATE = new HedgePolicy.Builder(HedgePolicy.Mode.DUPLICATE).build();
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final RecordingMetrics metrics = new RecordingMetrics();
+    private final List<SingleSubject<String>> requests = new ArrayList<>();
+    private final Single<String> source = Single.defer(() -> {
+        SingleSubject<String> request = SingleSubject.create();
+        requests.add(request);
+        return request;
+    });
+
+    @Before
+    public void setUp() {
+        RxJavaPlugins.setComputationSchedulerHandler(ignored -> scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        RxJavaPlugins.reset();
+    }
+
+    @Test
+    public void emitsPrimaryWithinDelay() {
+        RequestHedger hedger = new RequestHedger(DUPLICATE, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+
+        requests.get(0).onSuccess("value");
+
+        observer.assertResult("value");
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        assertEquals(1, requests.size());
+        assertTrue(metrics.outcomes.isEmpty());
+    }
+
+    @Test
+    public void fallbackEmitsLastValueAndKeepsPrimaryRunning() {
+        RequestHedger hedger = new RequestHedger(FALLBACK, metrics);
+        hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        requests.get(0).onSuccess("first");
+
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        observer.assertResult("first");
+        assertTrue(requests.get(1).hasObservers());
+        assertEquals(AwarenessMetrics.HEDGE_FALLBACK, (int) metrics.outcomes.get(0));
+
+        // the primary which lost still refreshes the last value
+        requests.get(1).onSuccess("second");
+        TestObserver<String> next = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        next.assertResult("second");
+    }
+
+    @Test
+    public void fallbackWaitsWithoutLastValue() {
+        RequestHedger hedger = new RequestHedger(FALLBACK, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        observer.assertEmpty();
+
+        requests.get(0).onSuccess("value");
+        observer.assertResult("value");
+    }
+
+    @Test
+    public void fallbackIgnoresValuesOfOtherKeys() {
+        RequestHedger hedger = new RequestHedger(FALLBACK, metrics);
+        hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        requests.get(0).onSuccess("value");
+
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "other", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        observer.assertEmpty();
+    }
+
+    @Test
+    public void fallbackIgnoresValuesOlderThanMaxAge() {
+        HedgePolicy policy = new HedgePolicy.Builder(HedgePolicy.Mode.FALLBACK)
+                .maxFallbackAge(0, TimeUnit.MILLISECONDS)
+                .build();
+        RequestHedger hedger = new RequestHedger(policy, metrics);
+        hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        requests.get(0).onSuccess("value");
+
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        observer.assertEmpty();
+    }
+
+    @Test
+    public void fallbackFailsWithPrimary() {
+        RequestHedger hedger = new RequestHedger(FALLBACK, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+
+        requests.get(0).onError(new IllegalStateException());
+
+        observer.assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void duplicateEmitsFirstResult() {
+        RequestHedger hedger = new RequestHedger(DUPLICATE, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        requests.get(1).onSuccess("second");
+
+        observer.assertResult("second");
+        assertEquals(AwarenessMetrics.HEDGE_SECONDARY_WON, (int) metrics.outcomes.get(0));
+        // the primary which lost keeps running so that its latency is recorded
+        assertTrue(requests.get(0).hasObservers());
+    }
+
+    @Test
+    public void duplicateReportsPrimaryWinning() {
+        RequestHedger hedger = new RequestHedger(DUPLICATE, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        requests.get(0).onSuccess("first");
+
+        observer.assertResult("first");
+        assertEquals(AwarenessMetrics.HEDGE_PRIMARY_WON, (int) metrics.outcomes.get(0));
+    }
+
+    @Test
+    public void duplicateFailsOnceBothRequestsFailed() {
+        RequestHedger hedger = new RequestHedger(DUPLICATE, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        requests.get(0).onError(new IllegalStateException());
+        observer.assertEmpty();
+
+        requests.get(1).onError(new IllegalArgumentException());
+        observer.assertError(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void duplicateSucceedsAfterPrimaryFailed() {
+        RequestHedger hedger = new RequestHedger(DUPLICATE, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        requests.get(0).onError(new IllegalStateException());
+        requests.get(1).onSuccess("second");
+
+        observer.assertResult("second");
+    }
+
+    @Test
+    public void duplicateFailsBeforeDelayWithoutSecondRequest() {
+        RequestHedger hedger = new RequestHedger(DUPLICATE, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+
+        requests.get(0).onError(new IllegalStateException());
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        observer.assertError(IllegalStateException.class);
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void disposingCancelsRunningRequests() {
+        RequestHedger hedger = new RequestHedger(DUPLICATE, metrics);
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        observer.dispose();
+
+        assertFalse(requests.get(0).hasObservers());
+        assertFalse(requests.get(1).hasObservers());
+    }
+
+    @Test
+    public void duplicateDisposesLoserAfterLoserTimeout() {
+        HedgePolicy policy = new HedgePolicy.Builder(HedgePolicy.Mode.DUPLICATE)
+                .loserTimeout(10, TimeUnit.SECONDS)
+                .build();
+        RequestHedger hedger = new RequestHedger(policy, metrics);
+        hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        requests.get(1).onSuccess("second");
+
+        scheduler.advanceTimeBy(7, TimeUnit.SECONDS);
+        assertTrue(requests.get(0).hasObservers());
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertFalse(requests.get(0).hasObservers());
+    }
+
+    @Test
+    public void fallbackDisposesPrimaryAfterCallerTimeout() {
+        RequestHedger hedger = new RequestHedger(FALLBACK, metrics);
+        hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        requests.get(0).onSuccess("first");
+
+        TestObserver<String> observer = hedger.hedge(SnapshotType.WEATHER, "key", source, 5000).test();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        observer.assertResult("first");
+
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        assertTrue(requests.get(1).hasObservers());
+
+        // capped by the timeout of the caller instead of the default loser timeout
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertFalse(requests.get(1).hasObservers());
+    }
+
+    @Test
+    public void percentileDelayIsAtLeastOneMillisecond() {
+        HedgePolicy policy = new HedgePolicy.Builder(HedgePolicy.Mode.DUPLICATE)
+                .delay(0, TimeUnit.MILLISECONDS)
+                .percentile(90)
+                .build();
+        RequestHedger hedger = new RequestHedger(policy, metrics);
+
+        // requests which finish right away record sub-millisecond latencies
+        for (int i = 0; i < 20; i++) {
+            hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+            requests.get(requests.size() - 1).onSuccess("value");
+        }
+        scheduler.triggerActions();
+
+        hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        int issued = requests.size();
+        scheduler.triggerActions();
+        assertEquals(issued, requests.size());
+    }
+
+    @Test
+    public void percentileDelayIncludesRequestsWhichLost() {
+        HedgePolicy policy = new HedgePolicy.Builder(HedgePolicy.Mode.DUPLICATE)
+                .delay(0, TimeUnit.MILLISECONDS)
+                .percentile(90)
+                .build();
+        RequestHedger hedger = new RequestHedger(policy, metrics);
+
+        // every hedge wins against its primary, which finishes a few milliseconds later
+        for (int i = 0; i < 20; i++) {
+            hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+            scheduler.triggerActions();
+            requests.get(requests.size() - 1).onSuccess("second");
+            sleep(5);
+            requests.get(requests.size() - 2).onSuccess("first");
+        }
+
+        // the slow primaries are part of the samples, so the delay is no longer zero
+        hedger.hedge(SnapshotType.WEATHER, "key", source, 0).test();
+        int issued = requests.size();
+        scheduler.triggerActions();
+        assertEquals(issued, requests.size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static final class RecordingMetrics implements AwarenessMetrics {
+
+        final List<Integer> outcomes = new ArrayList<>();
+
+        @Override
+        public void onClientConnected(long connectNanos) {
+        }
+
+        @Override
+        public void onClientConnectionFailed(int errorCode, long connectNanos) {
+        }
+
+        @Override
+        public void onRequestFinished(@NonNull String operation, int statusCode, long requestNanos,
+                                      long unwrapNanos) {
+        }
+
+        @Override
+        public void onRequestTimedOut(@NonNull String operation, long timeoutNanos) {
+        }
+
+        @Override
+        public void onRequestHedged(@NonNull String operation, int outcome) {
+            outcomes.add(outcome);
+        }
+    }
+}